@@ -0,0 +1,40 @@
+package com.medicine.site.benchmark;
+
+import com.medicine.site.entity.User;
+import com.medicine.site.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A sign-in: the user lookup plus BCrypt verification on the hashing pool
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthBenchmark {
+    
+    private UserService userService;
+    
+    @Setup
+    public void setUp(SeededShop shop) {
+        userService = shop.bean(UserService.class);
+    }
+    
+    @Benchmark
+    public User authenticateUser() {
+        return userService.authenticateUser(SeededShop.USERNAME, SeededShop.PASSWORD);
+    }
+}
@@ -0,0 +1,63 @@
+package com.medicine.site.benchmark;
+
+import com.medicine.site.entity.Cart;
+import com.medicine.site.service.CartService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding to a cart (reservation, upsert and totals) and loading a cart of 20 lines.
+ * Additions rotate over 1000 users and the whole catalog, so most of them add a new line.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CartBenchmark {
+    
+    private static final int USERS = 1_000;
+    
+    private CartService cartService;
+    
+    private long firstMedicineId;
+    
+    private long medicineCount;
+    
+    private long addition;
+    
+    @Setup
+    public void setUp(SeededShop shop) {
+        cartService = shop.bean(CartService.class);
+        firstMedicineId = shop.firstMedicineId;
+        medicineCount = shop.lastMedicineId - shop.firstMedicineId + 1;
+        for (int i = 0; i < SeededShop.CART_LINES; i++) {
+            cartService.addToCart(SeededShop.CART_USER_ID, firstMedicineId + i, 1);
+        }
+    }
+    
+    @Benchmark
+    public Integer addToCart() {
+        long n = addition++;
+        long userId = 1_000 + n % USERS;
+        long medicineId = firstMedicineId + (n * 7_919) % medicineCount;
+        return cartService.addToCart(userId, medicineId, 1);
+    }
+    
+    @Benchmark
+    public List<Cart> getUserCart() {
+        return cartService.getUserCart(SeededShop.CART_USER_ID);
+    }
+}
@@ -0,0 +1,53 @@
+package com.medicine.site.benchmark;
+
+import com.medicine.site.entity.Cart;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart line pricing ({@code Cart.calculatePrices}), run by the constructor and every quantity change
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CartPricingBenchmark {
+    
+    private Medicine medicine;
+    
+    private Cart cart;
+    
+    private int quantity;
+    
+    @Setup
+    public void setUp() {
+        medicine = new Medicine("Paracetamol 500mg", "Acetaminophen", "Johnson & Johnson", "Pain Relief",
+                "Pain reliever", Money.of("5.99"), 100);
+        cart = new Cart(1L, medicine, 1);
+    }
+    
+    @Benchmark
+    public Cart newCartLine() {
+        return new Cart(1L, medicine, 3);
+    }
+    
+    @Benchmark
+    public Money changeQuantity() {
+        cart.setQuantity(1 + (quantity++ & 15));
+        return cart.getTotalPrice();
+    }
+}
@@ -0,0 +1,80 @@
+package com.medicine.site.benchmark;
+
+import com.medicine.site.dto.CatalogFilter;
+import com.medicine.site.dto.MedicineSummary;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.service.MedicineService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalog reads behind the medicine pages: indexed search, the filtered catalog query and the
+ * paged finders, each asking for one 12-item page as the catalog page does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogBenchmark {
+    
+    private MedicineService medicineService;
+    
+    private final Pageable page = PageRequest.of(0, 12, Sort.by("name"));
+    
+    private final Pageable deepPage = PageRequest.of(40, 12, Sort.by("name"));
+    
+    private final CatalogFilter categoryFilter = new CatalogFilter();
+    
+    @Setup
+    public void setUp(SeededShop shop) {
+        medicineService = shop.bean(MedicineService.class);
+        categoryFilter.setCategory("Antibiotics");
+        categoryFilter.setInStock(true);
+    }
+    
+    @Benchmark
+    public Page<Medicine> searchMedicines() {
+        return medicineService.searchMedicines("ibuprofen", page);
+    }
+    
+    @Benchmark
+    public Page<MedicineSummary> findCatalog() {
+        return medicineService.findCatalog(categoryFilter, page);
+    }
+    
+    @Benchmark
+    public Page<MedicineSummary> findCatalogDeepPage() {
+        return medicineService.findCatalog(categoryFilter, deepPage);
+    }
+    
+    @Benchmark
+    public Page<Medicine> getAllMedicines() {
+        return medicineService.getAllMedicines(page);
+    }
+    
+    @Benchmark
+    public Page<Medicine> getMedicinesByCategory() {
+        return medicineService.getMedicinesByCategory("Allergy", page);
+    }
+    
+    @Benchmark
+    public Page<Medicine> getMedicinesInStock() {
+        return medicineService.getMedicinesInStock(page);
+    }
+}
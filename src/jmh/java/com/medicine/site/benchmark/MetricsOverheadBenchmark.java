@@ -0,0 +1,80 @@
+package com.medicine.site.benchmark;
+
+import com.medicine.site.support.EmbeddedShop;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.test.autoconfigure.web.servlet.SpringBootMockMvcBuilderCustomizer;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.DefaultMockMvcBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Per-request cost of the metrics: the same requests with the request latency observation
+ * and the per-request Hibernate counters on and off. Requests go through the application's
+ * registered filters in process (MockMvc), so socket noise does not hide the difference.
+ * The cheap JSON endpoint shows the overhead most plainly; the detail page puts it next
+ * to a typical page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+    
+    @Param({"true", "false"})
+    public boolean metrics;
+    
+    private EmbeddedShop shop;
+    
+    private MockMvc mockMvc;
+    
+    private String detailsPath;
+    
+    @Setup
+    public void start() {
+        shop = EmbeddedShop.start(WebApplicationType.SERVLET,
+                "server.port=0",
+                "rate-limit.enabled=false",
+                "management.observations.enable.http.server.requests=" + metrics,
+                "metrics.request-queries.enabled=" + metrics)
+                .seedMedicines(1000);
+        WebApplicationContext context = (WebApplicationContext) shop.context();
+        DefaultMockMvcBuilder builder = MockMvcBuilders.webAppContextSetup(context);
+        new SpringBootMockMvcBuilderCustomizer(context).customize(builder);
+        mockMvc = builder.build();
+        detailsPath = "/medicines/" + shop.firstMedicineId();
+    }
+    
+    @TearDown
+    public void stop() {
+        shop.close();
+    }
+    
+    @Benchmark
+    public int passwordHashingStats() throws Exception {
+        return mockMvc.perform(get("/api/password-hashing/stats")).andReturn().getResponse().getStatus();
+    }
+    
+    @Benchmark
+    public int medicineDetails() throws Exception {
+        return mockMvc.perform(get(detailsPath)).andReturn().getResponse().getStatus();
+    }
+}
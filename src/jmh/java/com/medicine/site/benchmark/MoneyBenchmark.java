@@ -0,0 +1,145 @@
+package com.medicine.site.benchmark;
+
+import com.medicine.site.entity.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BigDecimal versus {@link Money} for the hot price paths: cart totals, price range
+ * filtering and facet price bucketing.
+ *
+ * Run with {@code -prof gc} to compare allocation rates as well as time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MoneyBenchmark {
+
+    private static final BigDecimal[] BUCKET_FLOORS = {
+            new BigDecimal("0"), new BigDecimal("10"), new BigDecimal("25"), new BigDecimal("50"), new BigDecimal("100")};
+
+    private static final long[] BUCKET_FLOOR_CENTS = {0L, 1_000L, 2_500L, 5_000L, 10_000L};
+
+    @Param({"50", "5000"})
+    private int lines;
+
+    private BigDecimal[] decimalPrices;
+
+    private Money[] moneyPrices;
+
+    private int[] quantities;
+
+    private final BigDecimal decimalMin = new BigDecimal("10.00");
+
+    private final BigDecimal decimalMax = new BigDecimal("50.00");
+
+    private final Money moneyMin = Money.of("10.00");
+
+    private final Money moneyMax = Money.of("50.00");
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        decimalPrices = new BigDecimal[lines];
+        moneyPrices = new Money[lines];
+        quantities = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            long cents = 100 + random.nextInt(20_000);
+            decimalPrices[i] = BigDecimal.valueOf(cents, 2);
+            moneyPrices[i] = Money.ofCents(cents);
+            quantities[i] = 1 + random.nextInt(10);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal cartTotalBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < lines; i++) {
+            total = total.add(decimalPrices[i].multiply(BigDecimal.valueOf(quantities[i])));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Money cartTotalMoney() {
+        long cents = 0;
+        for (int i = 0; i < lines; i++) {
+            cents += moneyPrices[i].getCents() * quantities[i];
+        }
+        return Money.ofCents(cents);
+    }
+
+    @Benchmark
+    public int priceFilterBigDecimal() {
+        int matches = 0;
+        for (BigDecimal price : decimalPrices) {
+            if (price.compareTo(decimalMin) >= 0 && price.compareTo(decimalMax) <= 0) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int priceFilterMoney() {
+        long min = moneyMin.getCents();
+        long max = moneyMax.getCents();
+        int matches = 0;
+        for (Money price : moneyPrices) {
+            if (price.getCents() >= min && price.getCents() <= max) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int[] facetBucketsBigDecimal() {
+        int[] counts = new int[BUCKET_FLOORS.length];
+        for (BigDecimal price : decimalPrices) {
+            int bucket = 0;
+            while (bucket + 1 < BUCKET_FLOORS.length && price.compareTo(BUCKET_FLOORS[bucket + 1]) >= 0) {
+                bucket++;
+            }
+            counts[bucket]++;
+        }
+        return counts;
+    }
+
+    @Benchmark
+    public int[] facetBucketsMoney() {
+        int[] counts = new int[BUCKET_FLOOR_CENTS.length];
+        for (Money price : moneyPrices) {
+            long cents = price.getCents();
+            int bucket = 0;
+            while (bucket + 1 < BUCKET_FLOOR_CENTS.length && cents >= BUCKET_FLOOR_CENTS[bucket + 1]) {
+                bucket++;
+            }
+            counts[bucket]++;
+        }
+        return counts;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MoneyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,76 @@
+package com.medicine.site.benchmark;
+
+import com.medicine.site.dto.CatalogFilter;
+import com.medicine.site.dto.MedicineSummary;
+import com.medicine.site.dto.SessionUser;
+import com.medicine.site.service.MedicineService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering medicines/simple-catalog for a signed-in user with one 12-item catalog page,
+ * the model prepared once so only the template engine is measured
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+    
+    private SpringTemplateEngine templateEngine;
+    
+    private MockServletContext servletContext;
+    
+    private JakartaServletWebApplication application;
+    
+    private final Map<String, Object> variables = new HashMap<>();
+    
+    @Setup
+    public void setUp(SeededShop shop) {
+        templateEngine = shop.bean(SpringTemplateEngine.class);
+        servletContext = new MockServletContext();
+        application = JakartaServletWebApplication.buildApplication(servletContext);
+        
+        Page<MedicineSummary> medicines = shop.bean(MedicineService.class)
+                .findCatalog(new CatalogFilter(), PageRequest.of(0, 12, Sort.by("name")));
+        variables.put("medicines", medicines);
+        variables.put("keysetPaging", false);
+        variables.put("cartItemCount", 3L);
+        variables.put("user", new SessionUser(SeededShop.CART_USER_ID, SeededShop.USERNAME, "Bench User"));
+        variables.put("currentSortBy", "name");
+        variables.put("currentSortDir", "asc");
+        variables.put("currentSize", 12);
+    }
+    
+    @Benchmark
+    public String renderSimpleCatalog() {
+        MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", "/medicines");
+        WebContext context = new WebContext(application.buildExchange(request, new MockHttpServletResponse()),
+                Locale.US, variables);
+        return templateEngine.process("medicines/simple-catalog", context);
+    }
+}
@@ -0,0 +1,57 @@
+package com.medicine.site.benchmark;
+
+import com.medicine.site.entity.User;
+import com.medicine.site.service.UserService;
+import com.medicine.site.support.EmbeddedShop;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+
+/**
+ * The application on an embedded database seeded with {@link #medicines} medicines, shared
+ * by the service benchmarks of one fork. Set the scale with {@code -p medicines=1000,100000,1000000}.
+ */
+@State(Scope.Benchmark)
+public class SeededShop {
+    
+    static final String USERNAME = "benchuser";
+    
+    static final String PASSWORD = "bench-password";
+    
+    // User with a prepared cart of CART_LINES lines, for cart reads
+    static final long CART_USER_ID = 1L;
+    
+    static final int CART_LINES = 20;
+    
+    @Param({"1000"})
+    public int medicines;
+    
+    private EmbeddedShop shop;
+    
+    // Smallest and largest id of the seeded medicines
+    long firstMedicineId;
+    
+    long lastMedicineId;
+    
+    @Setup(Level.Trial)
+    public void start() {
+        shop = EmbeddedShop.start(WebApplicationType.NONE, "rate-limit.enabled=false")
+                .seedMedicines(medicines);
+        firstMedicineId = shop.firstMedicineId();
+        lastMedicineId = shop.lastMedicineId();
+        bean(UserService.class).registerUser(new User(USERNAME, "bench@example.com", PASSWORD, "Bench User"));
+    }
+    
+    @TearDown(Level.Trial)
+    public void stop() {
+        shop.close();
+    }
+    
+    <T> T bean(Class<T> type) {
+        return shop.bean(type);
+    }
+}
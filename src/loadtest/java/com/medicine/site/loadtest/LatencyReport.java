@@ -0,0 +1,157 @@
+package com.medicine.site.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms (HdrHistogram, microseconds) and error counts per endpoint.
+ * Recording is lock-free; {@link #reset()} drops what was recorded during warm-up.
+ */
+class LatencyReport {
+    
+    // Latencies above a minute are clamped; three significant digits
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+    
+    private static final String[] METRICS = {"throughput", "p50", "p95", "p99", "p999"};
+    
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+    
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    
+    private final Map<String, Histogram> results = new LinkedHashMap<>();
+    
+    private long elapsedNanos;
+    
+    void record(String endpoint, long nanos, boolean success) {
+        recorders.computeIfAbsent(endpoint, name -> new Recorder(HIGHEST_MICROS, 3))
+                .recordValue(Math.min(Math.max(nanos / 1_000, 1), HIGHEST_MICROS));
+        if (!success) {
+            errors.computeIfAbsent(endpoint, name -> new LongAdder()).increment();
+        }
+    }
+    
+    void reset() {
+        recorders.values().forEach(Recorder::reset);
+        errors.values().forEach(LongAdder::reset);
+    }
+    
+    /**
+     * Take everything recorded since the last reset as the result of a run of the given length
+     */
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+        Histogram total = new Histogram(HIGHEST_MICROS, 3);
+        recorders.keySet().stream().sorted().forEach(endpoint -> {
+            Histogram histogram = recorders.get(endpoint).getIntervalHistogram();
+            results.put(endpoint, histogram);
+            total.add(histogram);
+        });
+        results.put("total", total);
+    }
+    
+    void print(PrintStream out) {
+        out.printf("%-12s %9s %9s %9s %9s %9s %9s %9s %7s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+        results.forEach((endpoint, histogram) -> out.printf(Locale.ROOT, "%-12s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %7d%n",
+                endpoint, histogram.getTotalCount(), throughput(histogram),
+                millis(histogram, 50), millis(histogram, 95), millis(histogram, 99), millis(histogram, 99.9),
+                histogram.getMaxValue() / 1000.0, errorCount(endpoint)));
+    }
+    
+    /**
+     * Write one .hgrm percentile distribution per endpoint (values in milliseconds) and summary.properties
+     */
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<String, Histogram> entry : results.entrySet()) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey() + ".hgrm")))) {
+                entry.getValue().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        try (Writer writer = Files.newBufferedWriter(directory.resolve("summary.properties"))) {
+            summary().store(writer, "Load test summary: throughput in requests/s, percentiles in ms");
+        }
+    }
+    
+    /**
+     * Compare with a stored summary: lower throughput or higher percentiles beyond the
+     * tolerance (a fraction, e.g. 0.2) are regressions. Returns the regressions found.
+     */
+    List<String> compare(Path baselineFile, double tolerance, PrintStream out) throws IOException {
+        Properties baseline = new Properties();
+        try (Reader reader = Files.newBufferedReader(baselineFile)) {
+            baseline.load(reader);
+        }
+        Properties current = summary();
+        List<String> regressions = new ArrayList<>();
+        out.printf("%nCompared with %s (tolerance %.0f%%):%n", baselineFile, tolerance * 100);
+        for (String endpoint : results.keySet()) {
+            for (String metric : METRICS) {
+                String key = endpoint + "." + metric;
+                if (baseline.getProperty(key) == null) {
+                    continue;
+                }
+                double before = Double.parseDouble(baseline.getProperty(key));
+                double after = Double.parseDouble(current.getProperty(key));
+                double change = before == 0 ? 0 : (after - before) / before;
+                boolean worse = metric.equals("throughput") ? change < -tolerance : change > tolerance;
+                out.printf(Locale.ROOT, "  %-24s %10.2f -> %10.2f  %+7.1f%%%s%n",
+                        key, before, after, change * 100, worse ? "  REGRESSION" : "");
+                if (worse) {
+                    regressions.add(key);
+                }
+            }
+        }
+        return regressions;
+    }
+    
+    private Properties summary() {
+        Properties summary = new Properties();
+        results.forEach((endpoint, histogram) -> {
+            summary.setProperty(endpoint + ".requests", String.valueOf(histogram.getTotalCount()));
+            summary.setProperty(endpoint + ".errors", String.valueOf(errorCount(endpoint)));
+            summary.setProperty(endpoint + ".throughput", format(throughput(histogram)));
+            summary.setProperty(endpoint + ".p50", format(millis(histogram, 50)));
+            summary.setProperty(endpoint + ".p95", format(millis(histogram, 95)));
+            summary.setProperty(endpoint + ".p99", format(millis(histogram, 99)));
+            summary.setProperty(endpoint + ".p999", format(millis(histogram, 99.9)));
+        });
+        return summary;
+    }
+    
+    private long errorCount(String endpoint) {
+        if (endpoint.equals("total")) {
+            return errors.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+        LongAdder count = errors.get(endpoint);
+        return count == null ? 0 : count.sum();
+    }
+    
+    private double throughput(Histogram histogram) {
+        return histogram.getTotalCount() / (elapsedNanos / 1e9);
+    }
+    
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+    
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
@@ -0,0 +1,291 @@
+package com.medicine.site.loadtest;
+
+import com.medicine.site.support.EmbeddedShop;
+import org.springframework.boot.WebApplicationType;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP load driver: boots the application on an embedded database with generated medicines
+ * and users, then runs simulated shoppers on virtual threads. Each shopper signs in, performs
+ * a random mix of catalog browsing, searches, detail views, quick-adds, cart views and cart
+ * updates, signs out and starts over. Shoppers send their next request as soon as the last one
+ * answered (plus the optional think time), so the run finds the throughput ceiling for the
+ * given concurrency; latencies are recorded per endpoint after the warm-up.
+ *
+ * Settings are system properties (see the loadtest profile in the pom):
+ * loadtest.users, loadtest.medicines, loadtest.warmup-seconds, loadtest.duration-seconds,
+ * loadtest.think-ms, loadtest.actions-per-session, loadtest.mix, loadtest.output,
+ * loadtest.baseline, loadtest.tolerance and loadtest.fail-on-regression.
+ */
+public class LoadTest {
+    
+    private static final String PASSWORD = "load-password";
+    
+    private static final String USER_PREFIX = "shopper";
+    
+    private final int users = Integer.getInteger("loadtest.users", 50);
+    
+    private final int medicines = Integer.getInteger("loadtest.medicines", 10_000);
+    
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+    
+    private final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 60);
+    
+    private final int thinkMillis = Integer.getInteger("loadtest.think-ms", 0);
+    
+    private final int actionsPerSession = Integer.getInteger("loadtest.actions-per-session", 20);
+    
+    // Relative weights of the actions between sign-in and sign-out
+    private final Map<String, Integer> mix = parseMix(System.getProperty("loadtest.mix",
+            "browse=35,search=20,details=20,quick-add=10,cart=10,cart-update=5"));
+    
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    
+    private final LatencyReport report = new LatencyReport();
+    
+    private String baseUrl;
+    
+    private long firstMedicineId;
+    
+    private long medicineCount;
+    
+    private volatile boolean running = true;
+    
+    public static void main(String[] args) throws Exception {
+        System.exit(new LoadTest().run());
+    }
+    
+    int run() throws Exception {
+        System.out.printf("Seeding %,d medicines and %,d users...%n", medicines, users);
+        try (EmbeddedShop shop = EmbeddedShop.start(WebApplicationType.SERVLET,
+                "server.port=0",
+                // One client address for every shopper: per-IP limits would measure the limiter, not the shop
+                "rate-limit.enabled=false")) {
+            shop.seedMedicines(medicines).seedUsers(USER_PREFIX, users, PASSWORD);
+            baseUrl = "http://localhost:" + shop.port();
+            firstMedicineId = shop.firstMedicineId();
+            medicineCount = shop.lastMedicineId() - firstMedicineId + 1;
+            
+            System.out.printf("Running %d shoppers: %ds warm-up, %ds measured, mix %s%n",
+                    users, warmupSeconds, durationSeconds, mix);
+            ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+            List<Future<?>> shoppers = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                String username = USER_PREFIX + i;
+                shoppers.add(executor.submit(() -> shop(username)));
+            }
+            
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+            report.reset();
+            long started = System.nanoTime();
+            TimeUnit.SECONDS.sleep(durationSeconds);
+            running = false;
+            report.finish(System.nanoTime() - started);
+            for (Future<?> shopper : shoppers) {
+                shopper.get();
+            }
+            executor.shutdown();
+        }
+        
+        System.out.println();
+        report.print(System.out);
+        Path output = Path.of(System.getProperty("loadtest.output", "target/loadtest"));
+        report.write(output);
+        System.out.printf("%nHistograms and summary.properties written to %s%n", output);
+        
+        Path baseline = Path.of(System.getProperty("loadtest.baseline", "src/loadtest/baseline.properties"));
+        if (!Files.exists(baseline)) {
+            System.out.printf("No baseline at %s; copy %s there to start comparing%n", baseline, output.resolve("summary.properties"));
+            return 0;
+        }
+        double tolerance = Double.parseDouble(System.getProperty("loadtest.tolerance", "0.2"));
+        List<String> regressions = report.compare(baseline, tolerance, System.out);
+        if (!regressions.isEmpty() && Boolean.getBoolean("loadtest.fail-on-regression")) {
+            System.out.printf("%d regressions beyond %.0f%%%n", regressions.size(), tolerance * 100);
+            return 1;
+        }
+        return 0;
+    }
+    
+    /**
+     * One shopper: sign in, a session of random actions, sign out, until the run ends
+     */
+    private Void shop(String username) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            Session session = new Session();
+            if (!session.login(username)) {
+                pause(100);
+                continue;
+            }
+            for (int i = 0; i < actionsPerSession && running; i++) {
+                session.perform(pick(random), random);
+                pause(thinkMillis);
+            }
+            session.send("logout", get("/auth/logout"));
+        }
+        return null;
+    }
+    
+    private String pick(ThreadLocalRandom random) {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int ticket = random.nextInt(total);
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            ticket -= entry.getValue();
+            if (ticket < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty mix");
+    }
+    
+    private long randomMedicineId(ThreadLocalRandom random) {
+        return firstMedicineId + random.nextLong(medicineCount);
+    }
+    
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30)).GET();
+    }
+    
+    private HttpRequest.Builder post(String path, String contentType, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+    
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+    
+    private static void pause(int millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            weights.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+    
+    /**
+     * A signed-in shopper's cookie and the medicines they put in their cart
+     */
+    private final class Session {
+        private String cookie;
+        private final List<Long> cartMedicineIds = new ArrayList<>();
+        
+        boolean login(String username) {
+            HttpResponse<Void> response = send("login", post("/auth/login", "application/x-www-form-urlencoded",
+                    "usernameOrEmail=" + encode(username) + "&password=" + encode(PASSWORD)));
+            if (response == null || response.statusCode() != 302) {
+                return false;
+            }
+            cookie = response.headers().allValues("Set-Cookie").stream()
+                    .filter(value -> value.startsWith("JSESSIONID="))
+                    .map(value -> value.split(";", 2)[0])
+                    .findFirst()
+                    .orElse(null);
+            return cookie != null;
+        }
+        
+        void perform(String action, ThreadLocalRandom random) {
+            switch (action) {
+                case "browse" -> send(action, get(browsePath(random)));
+                case "search" -> send(action, get("/medicines?search="
+                        + encode(EmbeddedShop.NAMES[random.nextInt(EmbeddedShop.NAMES.length)])));
+                case "details" -> send(action, get("/medicines/" + randomMedicineId(random)));
+                case "quick-add" -> {
+                    long medicineId = randomMedicineId(random);
+                    if (send(action, post("/medicines/quick-add/" + medicineId,
+                            "application/x-www-form-urlencoded", "quantity=1")) != null) {
+                        cartMedicineIds.add(medicineId);
+                    }
+                }
+                case "cart" -> send(action, get("/cart"));
+                case "cart-update" -> {
+                    if (cartMedicineIds.isEmpty()) {
+                        send("cart", get("/cart"));
+                        return;
+                    }
+                    long medicineId = cartMedicineIds.get(random.nextInt(cartMedicineIds.size()));
+                    send(action, post("/cart/update", "application/json",
+                            "{\"" + medicineId + "\":" + (1 + random.nextInt(5)) + "}"));
+                }
+                default -> throw new IllegalArgumentException("Unknown action " + action);
+            }
+        }
+        
+        // Catalog page with a random combination of the filters the catalog form offers
+        private String browsePath(ThreadLocalRandom random) {
+            StringBuilder path = new StringBuilder("/medicines?page=").append(random.nextInt(5));
+            if (random.nextBoolean()) {
+                path.append("&category=").append(encode(EmbeddedShop.CATEGORIES[random.nextInt(EmbeddedShop.CATEGORIES.length)]));
+            }
+            if (random.nextInt(4) == 0) {
+                path.append("&manufacturer=").append(encode("Manufacturer " + random.nextInt(EmbeddedShop.MANUFACTURERS)));
+            }
+            if (random.nextInt(3) == 0) {
+                path.append("&inStock=true");
+            }
+            if (random.nextInt(4) == 0) {
+                path.append("&minPrice=10&maxPrice=50");
+            }
+            if (random.nextBoolean()) {
+                path.append("&sortBy=price&sortDir=").append(random.nextBoolean() ? "asc" : "desc");
+            }
+            return path.toString();
+        }
+        
+        HttpResponse<Void> send(String endpoint, HttpRequest.Builder request) {
+            if (cookie != null) {
+                request.header("Cookie", cookie);
+            }
+            long started = System.nanoTime();
+            try {
+                HttpResponse<Void> response = client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+                int status = response.statusCode();
+                boolean success = status < 400 || (endpoint.equals("cart-update") && status == 409);
+                report.record(endpoint, System.nanoTime() - started, success);
+                return success ? response : null;
+            } catch (Exception e) {
+                report.record(endpoint, System.nanoTime() - started, false);
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.medicine.site.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.observation.ServerRequestObservationConvention;
+
+/**
+ * Metrics beyond what Actuator collects by itself: a handler tag on the request latency
+ * timer, and the hooks that let Hibernate report sessions and statements per request
+ * (see {@link RequestQueryFilter})
+ */
+@Configuration
+public class MetricsConfig {
+    
+    @Bean
+    public ServerRequestObservationConvention serverRequestObservationConvention() {
+        return new HandlerObservationConvention();
+    }
+    
+    @Bean
+    public HibernatePropertiesCustomizer requestQueryCountingCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCountingStatementInspector());
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SessionCountingListener.class.getName());
+        };
+    }
+}
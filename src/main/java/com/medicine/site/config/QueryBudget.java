@@ -0,0 +1,28 @@
+package com.medicine.site.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Most SQL statements Hibernate may prepare for one request to a controller method, page
+ * rendering included; the hand-written JdbcTemplate statements of the custom repositories
+ * (upserts, batches) are not counted, so handlers whose work is mostly such statements carry no
+ * budget. Requests over budget are logged with the stack of the first statement over it, or fail
+ * outright in tests ({@code query-budget.mode}).
+ *
+ * Methods without the annotation get {@code query-budget.default-statements}; budgets can be
+ * overridden with {@code query-budget.handlers.<Controller>.<method>}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface QueryBudget {
+    
+    /**
+     * Statements allowed per request
+     */
+    int value();
+}
@@ -0,0 +1,12 @@
+package com.medicine.site.config;
+
+/**
+ * A request ran more statements than its {@link QueryBudget}, or repeated one statement like
+ * an N+1 loop; only thrown when {@code query-budget.mode=fail}, as in the tests
+ */
+public class QueryBudgetExceededException extends RuntimeException {
+    
+    public QueryBudgetExceededException(String message, Throwable stackSample) {
+        super(message, stackSample);
+    }
+}
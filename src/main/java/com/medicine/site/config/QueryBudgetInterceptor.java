@@ -0,0 +1,47 @@
+package com.medicine.site.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands the {@link QueryBudget} of the controller method about to run to the request's
+ * {@link RequestQueryCounter}, so the statement that breaks the budget is caught as it happens
+ */
+@Component
+public class QueryBudgetInterceptor implements HandlerInterceptor {
+    
+    @Autowired
+    private Environment environment;
+    
+    // Budget of controller methods without @QueryBudget; negative means none
+    @Value("${query-budget.default-statements:-1}")
+    private int defaultStatements;
+    
+    // Resolved budgets per handler method
+    private final Map<Method, Integer> budgets = new ConcurrentHashMap<>();
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod handlerMethod) {
+            RequestQueryCounter.budget(budgets.computeIfAbsent(handlerMethod.getMethod(), this::resolve));
+        }
+        return true;
+    }
+    
+    private int resolve(Method method) {
+        QueryBudget queryBudget = method.getAnnotation(QueryBudget.class);
+        int statements = queryBudget != null ? queryBudget.value() : defaultStatements;
+        return environment.getProperty("query-budget.handlers." + method.getDeclaringClass().getSimpleName()
+                + "." + method.getName(), Integer.class, statements);
+    }
+}
@@ -0,0 +1,15 @@
+package com.medicine.site.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Sees every SQL statement Hibernate prepares and counts it for the current request
+ */
+public class QueryCountingStatementInspector implements StatementInspector {
+    
+    @Override
+    public String inspect(String sql) {
+        RequestQueryCounter.statementPrepared(sql);
+        return sql;
+    }
+}
@@ -0,0 +1,86 @@
+package com.medicine.site.config;
+
+import com.medicine.site.dto.SessionUser;
+import com.medicine.site.service.RateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies {@link RateLimited} to controller methods before they run, answering 429 with a
+ * Retry-After header straight away when the client's bucket is empty.
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+    
+    @Autowired
+    private RateLimiter rateLimiter;
+    
+    @Autowired
+    private Environment environment;
+    
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+    
+    // Resolved limits per handler method; methods without @RateLimited map to NONE
+    private final Map<Method, Limit> limits = new ConcurrentHashMap<>();
+    
+    private static final Limit NONE = new Limit(null, 0, 0);
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!enabled || !(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        Limit limit = limits.computeIfAbsent(handlerMethod.getMethod(), this::resolve);
+        if (limit == NONE) {
+            return true;
+        }
+        
+        long wait = rateLimiter.tryAcquire(limit.route(), limit.capacity(), limit.perMinute(), client(request));
+        if (wait == 0) {
+            return true;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait - 1) + 1)));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write("Too many requests. Please slow down and try again shortly.");
+        return false;
+    }
+    
+    // Signed-in users are limited by user id, everyone else by IP address (X-Forwarded-For behind a proxy, see server.forward-headers-strategy)
+    private static String client(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null && session.getAttribute(SessionUser.SESSION_ATTRIBUTE) instanceof SessionUser user) {
+            return "user:" + user.id();
+        }
+        return request.getRemoteAddr();
+    }
+    
+    private Limit resolve(Method method) {
+        RateLimited rateLimited = method.getAnnotation(RateLimited.class);
+        if (rateLimited == null) {
+            return NONE;
+        }
+        String prefix = "rate-limit.routes." + rateLimited.value() + ".";
+        return new Limit(rateLimited.value(),
+                environment.getProperty(prefix + "capacity", Integer.class, rateLimited.capacity()),
+                environment.getProperty(prefix + "per-minute", Integer.class, rateLimited.perMinute()));
+    }
+    
+    private record Limit(String route, int capacity, int perMinute) {}
+}
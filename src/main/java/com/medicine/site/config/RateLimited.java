@@ -0,0 +1,36 @@
+package com.medicine.site.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Rate limit a controller method per client: the signed-in user, or the client IP for
+ * anonymous requests. Each client gets a token bucket of {@link #capacity()} requests,
+ * refilled at {@link #perMinute()}; requests over the limit are answered with 429.
+ *
+ * Limits can be overridden per route with {@code rate-limit.routes.<route>.capacity}
+ * and {@code rate-limit.routes.<route>.per-minute}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimited {
+    
+    /**
+     * Route name; clients have a separate bucket per route
+     */
+    String value();
+    
+    /**
+     * Burst size: requests a client may make at once with a full bucket
+     */
+    int capacity();
+    
+    /**
+     * Sustained rate: tokens added back per minute
+     */
+    int perMinute();
+}
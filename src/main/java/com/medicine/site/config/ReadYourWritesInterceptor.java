@@ -0,0 +1,35 @@
+package com.medicine.site.config;
+
+import com.medicine.site.dto.SessionUser;
+import com.medicine.site.service.ReadYourWritesTracker;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Sends every read of a request to the primary database while the signed-in user is
+ * within their read-your-writes window, e.g. the cart page right after adding to the cart.
+ */
+@Component
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+    
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        HttpSession session = request.getSession(false);
+        if (session != null && session.getAttribute(SessionUser.SESSION_ATTRIBUTE) instanceof SessionUser user) {
+            readYourWritesTracker.pinIfRecentWrite(user.id());
+        }
+        return true;
+    }
+    
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReadYourWritesTracker.unpinCurrentThread();
+    }
+}
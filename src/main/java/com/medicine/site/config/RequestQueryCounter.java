@@ -0,0 +1,144 @@
+package com.medicine.site.config;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the Hibernate sessions opened and SQL statements prepared while the current request
+ * is being handled. Hibernate reports them through {@link QueryCountingStatementInspector} and
+ * {@link SessionCountingListener} on the thread doing the work, which for a request is its own
+ * (virtual) thread; work on other threads, such as the stock write-behind, is not counted.
+ *
+ * Counting also watches for two regressions as they happen, keeping the stack of the statement
+ * that caused each: the first statement over the request's {@link QueryBudget}, and any
+ * statement text run {@code repeatThreshold} times, the signature of an N+1 loop (one lazy
+ * load per row, identical apart from the bound parameters).
+ */
+public final class RequestQueryCounter {
+    
+    // Distinct statement texts tracked per request; beyond this, new texts are only counted
+    private static final int MAX_DISTINCT_STATEMENTS = 256;
+    
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+    
+    private RequestQueryCounter() {}
+    
+    /**
+     * Start counting for the request on the current thread, reporting statements repeated
+     * this many times (0 turns repeat detection off)
+     */
+    public static void begin(int repeatThreshold) {
+        CURRENT.set(new Counts(repeatThreshold));
+    }
+    
+    /**
+     * Stop counting and return what the request used, or null if counting was not started
+     */
+    public static Counts end() {
+        Counts counts = CURRENT.get();
+        CURRENT.remove();
+        return counts;
+    }
+    
+    /**
+     * Set the statement budget of the current request; negative means none
+     */
+    static void budget(int statements) {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.budget = statements;
+            counts.checkBudget();
+        }
+    }
+    
+    static void statementPrepared(String sql) {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.statementPrepared(sql);
+        }
+    }
+    
+    static void sessionOpened() {
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            counts.sessions++;
+        }
+    }
+    
+    public static final class Counts {
+        private final int repeatThreshold;
+        private int statements;
+        private int sessions;
+        private int budget = -1;
+        private Throwable overBudgetSample;
+        private final Map<String, Integer> executions = new HashMap<>();
+        private final Map<String, Throwable> repeatSamples = new LinkedHashMap<>();
+        
+        private Counts(int repeatThreshold) {
+            this.repeatThreshold = repeatThreshold;
+        }
+        
+        private void statementPrepared(String sql) {
+            statements++;
+            checkBudget();
+            if (repeatThreshold <= 0 || (executions.size() >= MAX_DISTINCT_STATEMENTS && !executions.containsKey(sql))) {
+                return;
+            }
+            int times = executions.merge(sql, 1, Integer::sum);
+            if (times == repeatThreshold) {
+                repeatSamples.put(sql, new Throwable("Statement repeated " + times + " times: " + sql));
+            }
+        }
+        
+        private void checkBudget() {
+            if (budget >= 0 && statements > budget && overBudgetSample == null) {
+                overBudgetSample = new Throwable("Statement " + statements + " over a budget of " + budget);
+            }
+        }
+        
+        public int getStatements() {
+            return statements;
+        }
+        
+        public int getSessions() {
+            return sessions;
+        }
+        
+        /**
+         * Statement budget of the request, negative if it has none
+         */
+        public int getBudget() {
+            return budget;
+        }
+        
+        public boolean isOverBudget() {
+            return overBudgetSample != null;
+        }
+        
+        /**
+         * Stack of the first statement over budget, or null
+         */
+        public Throwable getOverBudgetSample() {
+            return overBudgetSample;
+        }
+        
+        /**
+         * Statements run at least the repeat threshold number of times, with how often each ran
+         */
+        public Map<String, Integer> getRepeatedStatements() {
+            Map<String, Integer> repeated = new LinkedHashMap<>();
+            for (String sql : repeatSamples.keySet()) {
+                repeated.put(sql, executions.get(sql));
+            }
+            return repeated;
+        }
+        
+        /**
+         * Stack of the statement that reached the repeat threshold, or null
+         */
+        public Throwable getRepeatSample(String sql) {
+            return repeatSamples.get(sql);
+        }
+    }
+}
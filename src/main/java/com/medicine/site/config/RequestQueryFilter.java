@@ -0,0 +1,146 @@
+package com.medicine.site.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts the Hibernate sessions and SQL statements of each request ({@link RequestQueryCounter})
+ * and, once the request is done, records them as the distribution summaries
+ * http.server.requests.sessions and http.server.requests.statements, tagged like the request
+ * latency timer.
+ *
+ * Requests over their {@link QueryBudget} and statements repeated like an N+1 loop are counted
+ * (query.budget.exceeded, query.repeated.statements) and logged with the stack of the offending
+ * statement, at most once per handler every log interval. With {@code query-budget.mode=fail},
+ * as in the tests, they throw {@link QueryBudgetExceededException} instead.
+ *
+ * A filter rather than an interceptor, so the session opened in view and the statements run
+ * while rendering the page are counted too.
+ */
+@Component
+public class RequestQueryFilter extends OncePerRequestFilter {
+    
+    private static final Logger log = LoggerFactory.getLogger(RequestQueryFilter.class);
+    
+    // Bucket bounds of the statement and session counts
+    private static final double[] COUNT_BUCKETS = {1, 2, 3, 5, 10, 25, 50, 100};
+    
+    enum Mode { OFF, LOG, FAIL }
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${metrics.request-queries.enabled:true}")
+    private boolean metricsEnabled;
+    
+    @Value("${query-budget.mode:log}")
+    private Mode mode;
+    
+    @Value("${query-budget.repeated-statement-threshold:3}")
+    private int repeatThreshold;
+    
+    @Value("${query-budget.log-interval:1m}")
+    private Duration logInterval;
+    
+    // When each handler's budget violations and repeats were last logged
+    private final Map<String, Long> lastLogged = new ConcurrentHashMap<>();
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !metricsEnabled && mode == Mode.OFF;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestQueryCounter.Counts counts;
+        RequestQueryCounter.begin(mode == Mode.OFF ? 0 : repeatThreshold);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            counts = RequestQueryCounter.end();
+            if (metricsEnabled) {
+                record(request, counts);
+            }
+        }
+        if (mode != Mode.OFF) {
+            checkBudget(request, counts);
+        }
+    }
+    
+    private void record(HttpServletRequest request, RequestQueryCounter.Counts counts) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        String handler = HandlerObservationConvention.handlerName(request);
+        summary("http.server.requests.statements", "SQL statements Hibernate prepared for the request",
+                request.getMethod(), uri, handler).record(counts.getStatements());
+        summary("http.server.requests.sessions", "Hibernate sessions opened for the request",
+                request.getMethod(), uri, handler).record(counts.getSessions());
+    }
+    
+    private DistributionSummary summary(String name, String description, String method, String uri, String handler) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .tags("method", method, "uri", uri, "handler", handler)
+                .serviceLevelObjectives(COUNT_BUCKETS)
+                .register(meterRegistry);
+    }
+    
+    private void checkBudget(HttpServletRequest request, RequestQueryCounter.Counts counts) {
+        Map<String, Integer> repeated = counts.getRepeatedStatements();
+        if (!counts.isOverBudget() && repeated.isEmpty()) {
+            return;
+        }
+        String handler = HandlerObservationConvention.handlerName(request);
+        String requestLine = request.getMethod() + " " + request.getRequestURI() + " (" + handler + ")";
+        
+        if (counts.isOverBudget()) {
+            Counter.builder("query.budget.exceeded")
+                    .description("Requests that ran more statements than their query budget")
+                    .tag("handler", handler)
+                    .register(meterRegistry)
+                    .increment();
+            report(handler + ":budget", requestLine + " ran " + counts.getStatements()
+                    + " statements, over its budget of " + counts.getBudget(), counts.getOverBudgetSample());
+        }
+        for (Map.Entry<String, Integer> statement : repeated.entrySet()) {
+            Counter.builder("query.repeated.statements")
+                    .description("Statements a request ran repeatedly, likely N+1 loops")
+                    .tag("handler", handler)
+                    .register(meterRegistry)
+                    .increment();
+            report(handler + ":repeat", requestLine + " ran the same statement " + statement.getValue()
+                    + " times, likely an N+1 loop: " + statement.getKey(), counts.getRepeatSample(statement.getKey()));
+        }
+    }
+    
+    private void report(String key, String message, Throwable stackSample) {
+        if (mode == Mode.FAIL) {
+            throw new QueryBudgetExceededException(message, stackSample);
+        }
+        long now = System.nanoTime();
+        Long last = lastLogged.get(key);
+        if (last != null && now - last < logInterval.toNanos()) {
+            return;
+        }
+        lastLogged.put(key, now);
+        log.warn(message, stackSample);
+    }
+}
@@ -0,0 +1,13 @@
+package com.medicine.site.config;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Hibernate creates one of these for every session it opens, which is all it takes to count them
+ */
+public class SessionCountingListener implements SessionEventListener {
+    
+    public SessionCountingListener() {
+        RequestQueryCounter.sessionOpened();
+    }
+}
@@ -0,0 +1,34 @@
+package com.medicine.site.config;
+
+import com.medicine.site.dto.SessionUser;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Resolves {@link SessionUser} controller parameters from the session; null when nobody is signed in.
+ * Never creates a session.
+ */
+public class SessionUserArgumentResolver implements HandlerMethodArgumentResolver {
+    
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return SessionUser.class.equals(parameter.getParameterType());
+    }
+    
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        HttpSession session = request != null ? request.getSession(false) : null;
+        if (session == null) {
+            return null;
+        }
+        Object user = session.getAttribute(SessionUser.SESSION_ATTRIBUTE);
+        return user instanceof SessionUser ? user : null;
+    }
+}
@@ -0,0 +1,34 @@
+package com.medicine.site.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+    
+    @Autowired
+    private RateLimitInterceptor rateLimitInterceptor;
+    
+    @Autowired
+    private ReadYourWritesInterceptor readYourWritesInterceptor;
+    
+    @Autowired
+    private QueryBudgetInterceptor queryBudgetInterceptor;
+    
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new SessionUserArgumentResolver());
+    }
+    
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimitInterceptor);
+        registry.addInterceptor(readYourWritesInterceptor);
+        registry.addInterceptor(queryBudgetInterceptor);
+    }
+}
@@ -1,12 +1,19 @@
 package com.medicine.site.controller;
 
+import com.medicine.site.config.QueryBudget;
+import com.medicine.site.config.RateLimited;
+import com.medicine.site.dto.SessionUser;
 import com.medicine.site.dto.UserLoginDto;
 import com.medicine.site.dto.UserRegistrationDto;
 import com.medicine.site.entity.User;
+import com.medicine.site.service.PasswordHashingBusyException;
 import com.medicine.site.service.UserService;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -33,6 +40,8 @@ public class AuthController {
      * Process user registration
      */
     @PostMapping("/register")
+    @RateLimited(value = "register", capacity = 5, perMinute = 5)
+    @QueryBudget(2)
     public String processRegistration(@Valid @ModelAttribute("userRegistrationDto") UserRegistrationDto registrationDto,
                                     BindingResult bindingResult,
                                     RedirectAttributes redirectAttributes) {
@@ -68,6 +77,8 @@ public class AuthController {
                 "Registration successful! Welcome " + savedUser.getFullName() + "!");
             return "redirect:/auth/login";
             
+        } catch (PasswordHashingBusyException e) {
+            throw e;
         } catch (RuntimeException e) {
             redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
             return "redirect:/auth/register";
@@ -87,6 +98,8 @@ public class AuthController {
      * Process user login
      */
     @PostMapping("/login")
+    @RateLimited(value = "login", capacity = 10, perMinute = 20)
+    @QueryBudget(1)
     public String processLogin(@Valid @ModelAttribute("userLoginDto") UserLoginDto loginDto,
                              BindingResult bindingResult,
                              HttpSession session,
@@ -101,25 +114,36 @@ public class AuthController {
             // Authenticate user
             User user = userService.authenticateUser(loginDto.getUsernameOrEmail(), loginDto.getPassword());
             
-            // Store user in session
-            session.setAttribute("user", user);
-            session.setAttribute("userId", user.getId());
-            session.setAttribute("username", user.getUsername());
+            // Store only the compact principal in the session, never the entity
+            session.setAttribute(SessionUser.SESSION_ATTRIBUTE, SessionUser.of(user));
             
             redirectAttributes.addFlashAttribute("successMessage", 
                 "Welcome back, " + user.getFullName() + "!");
             return "redirect:/dashboard";
             
+        } catch (PasswordHashingBusyException e) {
+            throw e;
         } catch (RuntimeException e) {
             redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
             return "redirect:/auth/login";
         }
     }
     
+    /**
+     * Password hashing is saturated: fail fast with 503 so the client backs off and retries
+     */
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<String> handlePasswordHashingBusy(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+    
     /**
      * Logout user
      */
     @GetMapping("/logout")
+    @QueryBudget(0)
     public String logout(HttpSession session, RedirectAttributes redirectAttributes) {
         session.invalidate();
         redirectAttributes.addFlashAttribute("successMessage", "You have been logged out successfully.");
@@ -130,8 +154,13 @@ public class AuthController {
      * Show user profile
      */
     @GetMapping("/profile")
-    public String showProfile(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+    @QueryBudget(1)
+    public String showProfile(SessionUser sessionUser, Model model) {
+        if (sessionUser == null) {
+            return "redirect:/auth/login";
+        }
+        // The profile needs the full record; served from the small user cache after the first view
+        User user = userService.findById(sessionUser.id()).orElse(null);
         if (user == null) {
             return "redirect:/auth/login";
         }
@@ -143,6 +172,6 @@ public class AuthController {
      * Check if user is logged in (helper method)
      */
     private boolean isUserLoggedIn(HttpSession session) {
-        return session.getAttribute("user") != null;
+        return session.getAttribute(SessionUser.SESSION_ATTRIBUTE) != null;
     }
 }
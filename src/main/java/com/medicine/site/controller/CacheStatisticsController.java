@@ -0,0 +1,23 @@
+package com.medicine.site.controller;
+
+import com.medicine.site.dto.CacheRegionStats;
+import com.medicine.site.service.CacheStatisticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheStatisticsController {
+    
+    @Autowired
+    private CacheStatisticsService cacheStatisticsService;
+    
+    @GetMapping("/stats")
+    public List<CacheRegionStats> getCacheStatistics() {
+        return cacheStatisticsService.getRegionStatistics();
+    }
+}
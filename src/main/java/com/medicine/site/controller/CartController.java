@@ -1,17 +1,20 @@
 package com.medicine.site.controller;
 
-import com.medicine.site.entity.Cart;
-import com.medicine.site.entity.User;
+import com.medicine.site.config.QueryBudget;
+import com.medicine.site.dto.CartSummary;
+import com.medicine.site.dto.CartUpdateResult;
+import com.medicine.site.dto.SessionUser;
+import com.medicine.site.entity.Money;
 import com.medicine.site.service.CartService;
-import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.math.BigDecimal;
-import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/cart")
@@ -24,27 +27,20 @@ public class CartController {
      * Show shopping cart
      */
     @GetMapping
-    public String showCart(HttpSession session, Model model) {
+    @QueryBudget(1)
+    public String showCart(SessionUser user, Model model) {
         // Check if user is logged in
-        User user = (User) session.getAttribute("user");
         if (user == null) {
             return "redirect:/auth/login";
         }
         
-        // Get cart items
-        List<Cart> cartItems = cartService.getUserCart(user.getId());
+        // Lines, totals and stock warnings from a single query
+        CartSummary summary = cartService.getCartSummary(user.id());
         
-        // Calculate totals
-        BigDecimal totalValue = cartService.getTotalCartValue(user.getId());
-        Long itemCount = cartService.getCartItemCount(user.getId());
-        
-        // Check for insufficient stock
-        List<Cart> insufficientStockItems = cartService.checkCartStock(user.getId());
-        
-        model.addAttribute("cartItems", cartItems);
-        model.addAttribute("totalValue", totalValue);
-        model.addAttribute("itemCount", itemCount);
-        model.addAttribute("insufficientStockItems", insufficientStockItems);
+        model.addAttribute("cartItems", summary.getItems());
+        model.addAttribute("totalValue", summary.getTotalValue());
+        model.addAttribute("itemCount", summary.getItemCount());
+        model.addAttribute("insufficientStockItems", summary.getInsufficientStockItems());
         model.addAttribute("user", user);
         
         return "cart/cart";
@@ -54,19 +50,19 @@ public class CartController {
      * Update cart item quantity
      */
     @PostMapping("/update/{medicineId}")
+    @QueryBudget(1)
     public String updateCartItem(@PathVariable Long medicineId,
                                @RequestParam Integer quantity,
-                               HttpSession session,
+                               SessionUser user,
                                RedirectAttributes redirectAttributes) {
         
         // Check if user is logged in
-        User user = (User) session.getAttribute("user");
         if (user == null) {
             return "redirect:/auth/login";
         }
         
         try {
-            cartService.updateCartItemQuantity(user.getId(), medicineId, quantity);
+            cartService.updateCartItemQuantity(user.id(), medicineId, quantity);
             redirectAttributes.addFlashAttribute("successMessage", 
                 "Cart updated successfully!");
         } catch (RuntimeException e) {
@@ -76,21 +72,41 @@ public class CartController {
         return "redirect:/cart";
     }
     
+    /**
+     * Update several cart items at once (AJAX endpoint); the body maps medicine ID to quantity
+     */
+    @PostMapping("/update")
+    @ResponseBody
+    @QueryBudget(1)
+    public ResponseEntity<CartUpdateResult> updateCart(@RequestBody Map<Long, Integer> quantities,
+                                                       SessionUser user) {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(CartUpdateResult.failure("Please log in to update your cart"));
+        }
+        
+        try {
+            return ResponseEntity.ok(cartService.updateCartQuantities(user.id(), quantities));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(CartUpdateResult.failure(e.getMessage()));
+        }
+    }
+    
     /**
      * Remove item from cart
      */
     @PostMapping("/remove/{medicineId}")
+    @QueryBudget(2)
     public String removeFromCart(@PathVariable Long medicineId,
-                              HttpSession session,
+                              SessionUser user,
                               RedirectAttributes redirectAttributes) {
         
         // Check if user is logged in
-        User user = (User) session.getAttribute("user");
         if (user == null) {
             return "redirect:/auth/login";
         }
         
-        cartService.removeFromCart(user.getId(), medicineId);
+        cartService.removeFromCart(user.id(), medicineId);
         redirectAttributes.addFlashAttribute("successMessage", 
             "Item removed from cart successfully!");
         
@@ -101,14 +117,14 @@ public class CartController {
      * Clear entire cart
      */
     @PostMapping("/clear")
-    public String clearCart(HttpSession session, RedirectAttributes redirectAttributes) {
+    @QueryBudget(2)
+    public String clearCart(SessionUser user, RedirectAttributes redirectAttributes) {
         // Check if user is logged in
-        User user = (User) session.getAttribute("user");
         if (user == null) {
             return "redirect:/auth/login";
         }
         
-        cartService.clearCart(user.getId());
+        cartService.clearCart(user.id());
         redirectAttributes.addFlashAttribute("successMessage", 
             "Cart cleared successfully!");
         
@@ -120,12 +136,12 @@ public class CartController {
      */
     @GetMapping("/count")
     @ResponseBody
-    public Long getCartCount(HttpSession session) {
-        User user = (User) session.getAttribute("user");
+    @QueryBudget(1)
+    public Long getCartCount(SessionUser user) {
         if (user == null) {
             return 0L;
         }
-        return cartService.getCartItemCount(user.getId());
+        return cartService.getCartItemCount(user.id());
     }
     
     /**
@@ -133,11 +149,11 @@ public class CartController {
      */
     @GetMapping("/total")
     @ResponseBody
-    public BigDecimal getCartTotal(HttpSession session) {
-        User user = (User) session.getAttribute("user");
+    @QueryBudget(1)
+    public Money getCartTotal(SessionUser user) {
         if (user == null) {
-            return BigDecimal.ZERO;
+            return Money.ZERO;
         }
-        return cartService.getTotalCartValue(user.getId());
+        return cartService.getTotalCartValue(user.id());
     }
 }
@@ -1,7 +1,6 @@
 package com.medicine.site.controller;
 
-import com.medicine.site.entity.User;
-import jakarta.servlet.http.HttpSession;
+import com.medicine.site.dto.SessionUser;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,8 +14,7 @@ public class DashboardController {
     }
     
     @GetMapping("/dashboard")
-    public String dashboard(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+    public String dashboard(SessionUser user, Model model) {
         if (user == null) {
             return "redirect:/auth/login";
         }
@@ -1,15 +1,24 @@
 package com.medicine.site.controller;
 
+import com.medicine.site.config.QueryBudget;
+import com.medicine.site.config.RateLimited;
+import com.medicine.site.dto.CatalogFacets;
+import com.medicine.site.dto.CatalogFilter;
+import com.medicine.site.dto.CatalogWindow;
+import com.medicine.site.dto.MedicineSuggestionDto;
+import com.medicine.site.dto.MedicineSummary;
+import com.medicine.site.dto.SessionUser;
 import com.medicine.site.entity.Medicine;
-import com.medicine.site.entity.User;
 import com.medicine.site.service.CartService;
+import com.medicine.site.service.InvalidCatalogCursorException;
 import com.medicine.site.service.MedicineService;
-import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -29,24 +38,29 @@ public class MedicineController {
     private CartService cartService;
     
     /**
-     * Show medicine catalog with search and filtering
+     * Show medicine catalog with search and filtering. Query budget: page and count, plus the
+     * cart badge totals the first time a user's are not cached
      */
     @GetMapping
+    @QueryBudget(3)
     public String showMedicineCatalog(
             @RequestParam(value = "search", required = false) String search,
             @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "manufacturer", required = false) String manufacturer,
             @RequestParam(value = "minPrice", required = false) BigDecimal minPrice,
             @RequestParam(value = "maxPrice", required = false) BigDecimal maxPrice,
             @RequestParam(value = "prescription", required = false) String prescription,
+            @RequestParam(value = "inStock", required = false) Boolean inStock,
             @RequestParam(value = "sortBy", defaultValue = "name") String sortBy,
             @RequestParam(value = "sortDir", defaultValue = "asc") String sortDir,
             @RequestParam(value = "page", defaultValue = "0") int page,
             @RequestParam(value = "size", defaultValue = "12") int size,
-            HttpSession session,
+            @RequestParam(value = "paging", required = false) String paging,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "count", defaultValue = "false") boolean count,
+            SessionUser user,
             Model model) {
         
-        // Get user from session (can be null)
-        User user = (User) session.getAttribute("user");
         
         // Create pageable object
         Sort sort = sortDir.equalsIgnoreCase("desc") ? 
@@ -54,60 +68,82 @@ public class MedicineController {
                    Sort.by(sortBy).ascending();
         Pageable pageable = PageRequest.of(page, size, sort);
         
-        // Get medicines based on filters
-        Page<Medicine> medicines;
-        
-        if (search != null && !search.trim().isEmpty()) {
-            medicines = medicineService.searchMedicines(search.trim(), pageable);
-        } else if (category != null && !category.trim().isEmpty()) {
-            medicines = medicineService.getMedicinesByCategory(category, pageable);
-        } else if (minPrice != null || maxPrice != null) {
-            BigDecimal min = minPrice != null ? minPrice : BigDecimal.ZERO;
-            BigDecimal max = maxPrice != null ? maxPrice : new BigDecimal("999999");
-            medicines = medicineService.getMedicinesByPriceRange(min, max, pageable);
-        } else if ("prescription".equals(prescription)) {
-            medicines = medicineService.getPrescriptionMedicines().isEmpty() ? 
-                       Page.empty(pageable) : 
-                       medicineService.getMedicinesInStock(pageable);
-        } else if ("non-prescription".equals(prescription)) {
-            medicines = medicineService.getNonPrescriptionMedicines().isEmpty() ? 
-                       Page.empty(pageable) : 
-                       medicineService.getMedicinesInStock(pageable);
+        // Build the filter once; it drives both the catalog query and the facet counts
+        CatalogFilter filter = new CatalogFilter();
+        filter.setSearch(search != null ? search.trim() : null);
+        filter.setCategory(category);
+        filter.setManufacturer(manufacturer);
+        filter.setPrescriptionOption(prescription);
+        filter.setInStock(inStock);
+        filter.setMinPrice(minPrice);
+        filter.setMaxPrice(maxPrice);
+        
+        // Get medicines matching every filter in one query; keyset mode seeks past the cursor instead of using OFFSET
+        boolean keysetPaging = "keyset".equals(paging) || (cursor != null && !cursor.isBlank());
+        if (keysetPaging) {
+            CatalogWindow<MedicineSummary> window = medicineService.scrollCatalog(filter, cursor, size, sort, count);
+            model.addAttribute("medicines", window);
         } else {
-            medicines = medicineService.getAllMedicines(pageable);
+            Page<MedicineSummary> medicines = medicineService.findCatalog(filter, pageable);
+            model.addAttribute("medicines", medicines);
         }
         
-        // Get filter options
-        List<String> categories = medicineService.getAllCategories();
-        List<String> manufacturers = medicineService.getAllManufacturers();
+        // Get filter options with live counts from the in-memory facet index
+        CatalogFacets facets = medicineService.getCatalogFacets(filter);
+        List<String> categories = facets.getCategoryNames();
+        List<String> manufacturers = facets.getManufacturerNames();
         
         // Get cart info (only if user is logged in)
-        Long cartItemCount = (user != null) ? cartService.getCartItemCount(user.getId()) : 0L;
+        Long cartItemCount = (user != null) ? cartService.getCartItemCount(user.id()) : 0L;
         
         // Add to model
-        model.addAttribute("medicines", medicines);
+        model.addAttribute("keysetPaging", keysetPaging);
         model.addAttribute("categories", categories);
         model.addAttribute("manufacturers", manufacturers);
+        model.addAttribute("facets", facets);
         model.addAttribute("cartItemCount", cartItemCount);
         model.addAttribute("user", user);
         model.addAttribute("currentSearch", search);
         model.addAttribute("currentCategory", category);
+        model.addAttribute("currentManufacturer", manufacturer);
+        model.addAttribute("currentInStock", inStock);
         model.addAttribute("currentMinPrice", minPrice);
         model.addAttribute("currentMaxPrice", maxPrice);
         model.addAttribute("currentPrescription", prescription);
         model.addAttribute("currentSortBy", sortBy);
         model.addAttribute("currentSortDir", sortDir);
+        model.addAttribute("currentSize", size);
         
         return "medicines/simple-catalog";
     }
     
     /**
-     * Show medicine details
+     * A tampered or stale catalog cursor is the client's mistake: answer 400, not 500
+     */
+    @ExceptionHandler(InvalidCatalogCursorException.class)
+    public ResponseEntity<String> handleInvalidCatalogCursor(InvalidCatalogCursorException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+    
+    /**
+     * Suggest medicine names for type-ahead (AJAX endpoint), served from the in-memory
+     * suggestion index without any query
+     */
+    @GetMapping("/suggest")
+    @ResponseBody
+    @QueryBudget(0)
+    public List<MedicineSuggestionDto> suggestMedicines(@RequestParam(value = "q", defaultValue = "") String query,
+                                                        @RequestParam(value = "limit", defaultValue = "8") int limit) {
+        return medicineService.suggestMedicines(query, Math.min(Math.max(limit, 1), 20));
+    }
+    
+    /**
+     * Show medicine details. Query budget: the medicine on a second-level cache miss, plus the
+     * cart badge totals when not cached
      */
     @GetMapping("/{id}")
-    public String showMedicineDetails(@PathVariable Long id, HttpSession session, Model model) {
-        // Get user from session (can be null)
-        User user = (User) session.getAttribute("user");
+    @QueryBudget(2)
+    public String showMedicineDetails(@PathVariable Long id, SessionUser user, Model model) {
         
         // Get medicine details
         Medicine medicine = medicineService.getMedicineById(id).orElse(null);
@@ -116,7 +152,7 @@ public class MedicineController {
         }
         
         // Get cart info (only if user is logged in)
-        Long cartItemCount = (user != null) ? cartService.getCartItemCount(user.getId()) : 0L;
+        Long cartItemCount = (user != null) ? cartService.getCartItemCount(user.id()) : 0L;
         
         model.addAttribute("medicine", medicine);
         model.addAttribute("cartItemCount", cartItemCount);
@@ -126,22 +162,22 @@ public class MedicineController {
     }
     
     /**
-     * Add medicine to cart
+     * Add medicine to cart. No query budget: the cart upsert runs through JdbcTemplate, which
+     * the statement count cannot see
      */
     @PostMapping("/{id}/add-to-cart")
     public String addToCart(@PathVariable Long id, 
                            @RequestParam(value = "quantity", defaultValue = "1") Integer quantity,
-                           HttpSession session,
+                           SessionUser user,
                            RedirectAttributes redirectAttributes) {
         
         // Check if user is logged in
-        User user = (User) session.getAttribute("user");
         if (user == null) {
             return "redirect:/auth/login";
         }
         
         try {
-            cartService.addToCart(user.getId(), id, quantity);
+            cartService.addToCart(user.id(), id, quantity);
             redirectAttributes.addFlashAttribute("successMessage", 
                 "Medicine added to cart successfully!");
         } catch (RuntimeException e) {
@@ -152,23 +188,23 @@ public class MedicineController {
     }
     
     /**
-     * Quick add to cart from catalog
+     * Quick add to cart from catalog. No query budget, for the same reason as addToCart
      */
     @PostMapping("/quick-add/{id}")
+    @RateLimited(value = "quick-add", capacity = 30, perMinute = 120)
     public String quickAddToCart(@PathVariable Long id,
                                @RequestParam(value = "quantity", defaultValue = "1") Integer quantity,
                                @RequestParam(value = "returnUrl", defaultValue = "/medicines") String returnUrl,
-                               HttpSession session,
+                               SessionUser user,
                                RedirectAttributes redirectAttributes) {
         
         // Check if user is logged in
-        User user = (User) session.getAttribute("user");
         if (user == null) {
             return "redirect:/auth/login";
         }
         
         try {
-            cartService.addToCart(user.getId(), id, quantity);
+            cartService.addToCart(user.id(), id, quantity);
             redirectAttributes.addFlashAttribute("successMessage", 
                 "Medicine added to cart successfully!");
         } catch (RuntimeException e) {
@@ -0,0 +1,21 @@
+package com.medicine.site.controller;
+
+import com.medicine.site.dto.PasswordHashingStats;
+import com.medicine.site.service.PasswordHashingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/password-hashing")
+public class PasswordHashingStatsController {
+    
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+    
+    @GetMapping("/stats")
+    public PasswordHashingStats getPasswordHashingStatistics() {
+        return passwordHashingService.getStats();
+    }
+}
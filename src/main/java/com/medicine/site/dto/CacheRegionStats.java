@@ -0,0 +1,105 @@
+package com.medicine.site.dto;
+
+public class CacheRegionStats {
+    
+    private String region;
+    
+    private long hits;
+    
+    private long misses;
+    
+    private long puts;
+    
+    private long evictions;
+    
+    // Number of entries, -1 when the cache cannot tell
+    private long size = -1;
+    
+    // Approximate heap footprint in bytes, -1 when unknown
+    private long estimatedBytes = -1;
+    
+    // Default constructor
+    public CacheRegionStats() {}
+    
+    // Constructor
+    public CacheRegionStats(String region, long hits, long misses, long puts, long evictions) {
+        this.region = region;
+        this.hits = hits;
+        this.misses = misses;
+        this.puts = puts;
+        this.evictions = evictions;
+    }
+    
+    // Constructor for caches that know their size
+    public CacheRegionStats(String region, long hits, long misses, long puts, long evictions,
+                            long size, long estimatedBytes) {
+        this(region, hits, misses, puts, evictions);
+        this.size = size;
+        this.estimatedBytes = estimatedBytes;
+    }
+    
+    /**
+     * Share of lookups served from the cache (0 when nothing was looked up yet)
+     */
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+    
+    // Getters and Setters
+    public String getRegion() {
+        return region;
+    }
+    
+    public void setRegion(String region) {
+        this.region = region;
+    }
+    
+    public long getHits() {
+        return hits;
+    }
+    
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+    
+    public long getMisses() {
+        return misses;
+    }
+    
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+    
+    public long getPuts() {
+        return puts;
+    }
+    
+    public void setPuts(long puts) {
+        this.puts = puts;
+    }
+    
+    public long getEvictions() {
+        return evictions;
+    }
+    
+    public void setEvictions(long evictions) {
+        this.evictions = evictions;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    public void setSize(long size) {
+        this.size = size;
+    }
+    
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+    
+    public void setEstimatedBytes(long estimatedBytes) {
+        this.estimatedBytes = estimatedBytes;
+    }
+}
@@ -0,0 +1,65 @@
+package com.medicine.site.dto;
+
+import com.medicine.site.entity.Cart;
+import com.medicine.site.entity.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything the cart page shows, computed from one load of the user's cart lines
+ */
+public class CartSummary {
+    
+    private List<Cart> items = new ArrayList<>();
+    
+    private long itemCount;
+    
+    private Money totalValue = Money.ZERO;
+    
+    private List<Cart> insufficientStockItems = new ArrayList<>();
+    
+    // Default constructor
+    public CartSummary() {}
+    
+    // Constructor
+    public CartSummary(List<Cart> items, long itemCount, Money totalValue, List<Cart> insufficientStockItems) {
+        this.items = items;
+        this.itemCount = itemCount;
+        this.totalValue = totalValue;
+        this.insufficientStockItems = insufficientStockItems;
+    }
+    
+    // Getters and Setters
+    public List<Cart> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<Cart> items) {
+        this.items = items;
+    }
+    
+    public long getItemCount() {
+        return itemCount;
+    }
+    
+    public void setItemCount(long itemCount) {
+        this.itemCount = itemCount;
+    }
+    
+    public Money getTotalValue() {
+        return totalValue;
+    }
+    
+    public void setTotalValue(Money totalValue) {
+        this.totalValue = totalValue;
+    }
+    
+    public List<Cart> getInsufficientStockItems() {
+        return insufficientStockItems;
+    }
+    
+    public void setInsufficientStockItems(List<Cart> insufficientStockItems) {
+        this.insufficientStockItems = insufficientStockItems;
+    }
+}
@@ -0,0 +1,91 @@
+package com.medicine.site.dto;
+
+import com.medicine.site.entity.Money;
+
+/**
+ * Compact answer to a batch cart update: what changed and the cart totals afterwards
+ */
+public class CartUpdateResult {
+    
+    private boolean success;
+    
+    private String message;
+    
+    private int updatedLines;
+    
+    private int removedLines;
+    
+    private long itemCount;
+    
+    private Money totalValue;
+    
+    // Default constructor
+    public CartUpdateResult() {}
+    
+    // Constructor
+    public CartUpdateResult(int updatedLines, int removedLines, long itemCount, Money totalValue) {
+        this.success = true;
+        this.updatedLines = updatedLines;
+        this.removedLines = removedLines;
+        this.itemCount = itemCount;
+        this.totalValue = totalValue;
+    }
+    
+    /**
+     * A rejected update; nothing was changed
+     */
+    public static CartUpdateResult failure(String message) {
+        CartUpdateResult result = new CartUpdateResult();
+        result.setMessage(message);
+        return result;
+    }
+    
+    // Getters and Setters
+    public boolean isSuccess() {
+        return success;
+    }
+    
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public void setMessage(String message) {
+        this.message = message;
+    }
+    
+    public int getUpdatedLines() {
+        return updatedLines;
+    }
+    
+    public void setUpdatedLines(int updatedLines) {
+        this.updatedLines = updatedLines;
+    }
+    
+    public int getRemovedLines() {
+        return removedLines;
+    }
+    
+    public void setRemovedLines(int removedLines) {
+        this.removedLines = removedLines;
+    }
+    
+    public long getItemCount() {
+        return itemCount;
+    }
+    
+    public void setItemCount(long itemCount) {
+        this.itemCount = itemCount;
+    }
+    
+    public Money getTotalValue() {
+        return totalValue;
+    }
+    
+    public void setTotalValue(Money totalValue) {
+        this.totalValue = totalValue;
+    }
+}
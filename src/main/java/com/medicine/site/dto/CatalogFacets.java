@@ -0,0 +1,149 @@
+package com.medicine.site.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CatalogFacets {
+    
+    // Number of medicines matching every selected filter
+    private long total;
+    
+    private List<FacetCount> categories = new ArrayList<>();
+    
+    private List<FacetCount> manufacturers = new ArrayList<>();
+    
+    private List<FacetCount> prescription = new ArrayList<>();
+    
+    private List<FacetCount> stock = new ArrayList<>();
+    
+    private List<FacetCount> priceRanges = new ArrayList<>();
+    
+    // Default constructor
+    public CatalogFacets() {}
+    
+    /**
+     * Plain category names, in display order
+     */
+    public List<String> getCategoryNames() {
+        return values(categories);
+    }
+    
+    /**
+     * Plain manufacturer names, in display order
+     */
+    public List<String> getManufacturerNames() {
+        return values(manufacturers);
+    }
+    
+    private static List<String> values(List<FacetCount> counts) {
+        List<String> values = new ArrayList<>(counts.size());
+        for (FacetCount count : counts) {
+            values.add(count.getValue());
+        }
+        return values;
+    }
+    
+    // Getters and Setters
+    public long getTotal() {
+        return total;
+    }
+    
+    public void setTotal(long total) {
+        this.total = total;
+    }
+    
+    public List<FacetCount> getCategories() {
+        return categories;
+    }
+    
+    public void setCategories(List<FacetCount> categories) {
+        this.categories = categories;
+    }
+    
+    public List<FacetCount> getManufacturers() {
+        return manufacturers;
+    }
+    
+    public void setManufacturers(List<FacetCount> manufacturers) {
+        this.manufacturers = manufacturers;
+    }
+    
+    public List<FacetCount> getPrescription() {
+        return prescription;
+    }
+    
+    public void setPrescription(List<FacetCount> prescription) {
+        this.prescription = prescription;
+    }
+    
+    public List<FacetCount> getStock() {
+        return stock;
+    }
+    
+    public void setStock(List<FacetCount> stock) {
+        this.stock = stock;
+    }
+    
+    public List<FacetCount> getPriceRanges() {
+        return priceRanges;
+    }
+    
+    public void setPriceRanges(List<FacetCount> priceRanges) {
+        this.priceRanges = priceRanges;
+    }
+    
+    /**
+     * One facet value with the number of medicines it would match
+     */
+    public static class FacetCount {
+        
+        private String value;
+        
+        private String label;
+        
+        private long count;
+        
+        private boolean selected;
+        
+        public FacetCount() {}
+        
+        public FacetCount(String value, String label, long count, boolean selected) {
+            this.value = value;
+            this.label = label;
+            this.count = count;
+            this.selected = selected;
+        }
+        
+        public String getValue() {
+            return value;
+        }
+        
+        public void setValue(String value) {
+            this.value = value;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+        
+        public void setLabel(String label) {
+            this.label = label;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public void setCount(long count) {
+            this.count = count;
+        }
+        
+        public boolean isSelected() {
+            return selected;
+        }
+        
+        public void setSelected(boolean selected) {
+            this.selected = selected;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.medicine.site.dto;
+
+import java.math.BigDecimal;
+
+public class CatalogFilter {
+    
+    private String search;
+    
+    private String category;
+    
+    private String manufacturer;
+    
+    // null = any, true = prescription only, false = over the counter only
+    private Boolean requiresPrescription;
+    
+    // null or false = any, true = in stock only
+    private Boolean inStock;
+    
+    private BigDecimal minPrice;
+    
+    private BigDecimal maxPrice;
+    
+    // Default constructor
+    public CatalogFilter() {}
+    
+    /**
+     * Map the catalog's "prescription" request parameter onto the filter
+     */
+    public void setPrescriptionOption(String prescription) {
+        if ("prescription".equals(prescription)) {
+            this.requiresPrescription = true;
+        } else if ("non-prescription".equals(prescription)) {
+            this.requiresPrescription = false;
+        } else {
+            this.requiresPrescription = null;
+        }
+    }
+    
+    public boolean hasSearch() {
+        return search != null && !search.trim().isEmpty();
+    }
+    
+    /**
+     * Whether any filter other than the search term is set
+     */
+    public boolean hasAttributeFilters() {
+        return hasCategory() || hasManufacturer() || hasPriceRange() || requiresPrescription != null || isInStockOnly();
+    }
+    
+    public boolean hasCategory() {
+        return category != null && !category.trim().isEmpty();
+    }
+    
+    public boolean hasManufacturer() {
+        return manufacturer != null && !manufacturer.trim().isEmpty();
+    }
+    
+    public boolean hasPriceRange() {
+        return minPrice != null || maxPrice != null;
+    }
+    
+    public boolean isInStockOnly() {
+        return Boolean.TRUE.equals(inStock);
+    }
+    
+    // Getters and Setters
+    public String getSearch() {
+        return search;
+    }
+    
+    public void setSearch(String search) {
+        this.search = search;
+    }
+    
+    public String getCategory() {
+        return category;
+    }
+    
+    public void setCategory(String category) {
+        this.category = category;
+    }
+    
+    public String getManufacturer() {
+        return manufacturer;
+    }
+    
+    public void setManufacturer(String manufacturer) {
+        this.manufacturer = manufacturer;
+    }
+    
+    public Boolean getRequiresPrescription() {
+        return requiresPrescription;
+    }
+    
+    public void setRequiresPrescription(Boolean requiresPrescription) {
+        this.requiresPrescription = requiresPrescription;
+    }
+    
+    public Boolean getInStock() {
+        return inStock;
+    }
+    
+    public void setInStock(Boolean inStock) {
+        this.inStock = inStock;
+    }
+    
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+    
+    public void setMinPrice(BigDecimal minPrice) {
+        this.minPrice = minPrice;
+    }
+    
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+    
+    public void setMaxPrice(BigDecimal maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+}
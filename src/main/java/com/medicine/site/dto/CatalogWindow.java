@@ -0,0 +1,75 @@
+package com.medicine.site.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One keyset-paginated slice of the catalog with the cursors of its neighbours
+ */
+public class CatalogWindow<T> {
+    
+    private List<T> content = new ArrayList<>();
+    
+    private String nextCursor;
+    
+    private String previousCursor;
+    
+    // Only populated when the caller asked for a count
+    private Long totalElements;
+    
+    // Default constructor
+    public CatalogWindow() {}
+    
+    // Constructor
+    public CatalogWindow(List<T> content, String nextCursor, String previousCursor, Long totalElements) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+        this.totalElements = totalElements;
+    }
+    
+    public boolean isEmpty() {
+        return content.isEmpty();
+    }
+    
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+    
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+    
+    // Getters and Setters
+    public List<T> getContent() {
+        return content;
+    }
+    
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+    
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+    
+    public void setPreviousCursor(String previousCursor) {
+        this.previousCursor = previousCursor;
+    }
+    
+    public Long getTotalElements() {
+        return totalElements;
+    }
+    
+    public void setTotalElements(Long totalElements) {
+        this.totalElements = totalElements;
+    }
+}
@@ -0,0 +1,68 @@
+package com.medicine.site.dto;
+
+public class MedicineSuggestionDto {
+    
+    private Long id;
+    
+    private String name;
+    
+    private String genericName;
+    
+    // The name or generic name that matched the typed prefix
+    private String completion;
+    
+    private Integer stockQuantity;
+    
+    // Default constructor
+    public MedicineSuggestionDto() {}
+    
+    // Constructor
+    public MedicineSuggestionDto(Long id, String name, String genericName, String completion, Integer stockQuantity) {
+        this.id = id;
+        this.name = name;
+        this.genericName = genericName;
+        this.completion = completion;
+        this.stockQuantity = stockQuantity;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public String getGenericName() {
+        return genericName;
+    }
+    
+    public void setGenericName(String genericName) {
+        this.genericName = genericName;
+    }
+    
+    public String getCompletion() {
+        return completion;
+    }
+    
+    public void setCompletion(String completion) {
+        this.completion = completion;
+    }
+    
+    public Integer getStockQuantity() {
+        return stockQuantity;
+    }
+    
+    public void setStockQuantity(Integer stockQuantity) {
+        this.stockQuantity = stockQuantity;
+    }
+}
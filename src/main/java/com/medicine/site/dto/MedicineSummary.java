@@ -0,0 +1,92 @@
+package com.medicine.site.dto;
+
+import com.medicine.site.entity.Money;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only list view of a medicine: the columns catalog pages show, with the
+ * description cut down to a teaser. Never a managed entity.
+ */
+public class MedicineSummary {
+    
+    // Length of the description teaser selected for list views
+    public static final int SHORT_DESCRIPTION_LENGTH = 160;
+    
+    private final Long id;
+    
+    private final String name;
+    
+    private final String genericName;
+    
+    private final String manufacturer;
+    
+    private final String category;
+    
+    private final String shortDescription;
+    
+    private final Money price;
+    
+    private final Integer stockQuantity;
+    
+    private final Boolean requiresPrescription;
+    
+    private final LocalDateTime createdAt;
+    
+    // Constructor used by the JPQL/criteria constructor expression
+    public MedicineSummary(Long id, String name, String genericName, String manufacturer, String category,
+                           String shortDescription, Money price, Integer stockQuantity,
+                           Boolean requiresPrescription, LocalDateTime createdAt) {
+        this.id = id;
+        this.name = name;
+        this.genericName = genericName;
+        this.manufacturer = manufacturer;
+        this.category = category;
+        this.shortDescription = shortDescription;
+        this.price = price;
+        this.stockQuantity = stockQuantity;
+        this.requiresPrescription = requiresPrescription;
+        this.createdAt = createdAt;
+    }
+    
+    // Getters
+    public Long getId() {
+        return id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getGenericName() {
+        return genericName;
+    }
+    
+    public String getManufacturer() {
+        return manufacturer;
+    }
+    
+    public String getCategory() {
+        return category;
+    }
+    
+    public String getShortDescription() {
+        return shortDescription;
+    }
+    
+    public Money getPrice() {
+        return price;
+    }
+    
+    public Integer getStockQuantity() {
+        return stockQuantity;
+    }
+    
+    public Boolean getRequiresPrescription() {
+        return requiresPrescription;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,115 @@
+package com.medicine.site.dto;
+
+/**
+ * Load and latency of the password hashing pool
+ */
+public class PasswordHashingStats {
+    
+    // Hashing threads
+    private int poolSize;
+    
+    // Threads hashing right now
+    private int activeThreads;
+    
+    // Requests waiting for a hashing thread
+    private int queueDepth;
+    
+    private int queueCapacity;
+    
+    private long completed;
+    
+    // Requests turned away because the queue was full
+    private long rejected;
+    
+    private double averageQueueWaitMillis;
+    
+    private double maxQueueWaitMillis;
+    
+    private double averageHashingMillis;
+    
+    private double maxHashingMillis;
+    
+    // Default constructor
+    public PasswordHashingStats() {}
+    
+    // Getters and Setters
+    public int getPoolSize() {
+        return poolSize;
+    }
+    
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+    
+    public int getActiveThreads() {
+        return activeThreads;
+    }
+    
+    public void setActiveThreads(int activeThreads) {
+        this.activeThreads = activeThreads;
+    }
+    
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+    
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+    
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+    
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+    
+    public long getCompleted() {
+        return completed;
+    }
+    
+    public void setCompleted(long completed) {
+        this.completed = completed;
+    }
+    
+    public long getRejected() {
+        return rejected;
+    }
+    
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+    
+    public double getAverageQueueWaitMillis() {
+        return averageQueueWaitMillis;
+    }
+    
+    public void setAverageQueueWaitMillis(double averageQueueWaitMillis) {
+        this.averageQueueWaitMillis = averageQueueWaitMillis;
+    }
+    
+    public double getMaxQueueWaitMillis() {
+        return maxQueueWaitMillis;
+    }
+    
+    public void setMaxQueueWaitMillis(double maxQueueWaitMillis) {
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+    }
+    
+    public double getAverageHashingMillis() {
+        return averageHashingMillis;
+    }
+    
+    public void setAverageHashingMillis(double averageHashingMillis) {
+        this.averageHashingMillis = averageHashingMillis;
+    }
+    
+    public double getMaxHashingMillis() {
+        return maxHashingMillis;
+    }
+    
+    public void setMaxHashingMillis(double maxHashingMillis) {
+        this.maxHashingMillis = maxHashingMillis;
+    }
+}
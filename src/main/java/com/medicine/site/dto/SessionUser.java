@@ -0,0 +1,81 @@
+package com.medicine.site.dto;
+
+import com.medicine.site.entity.User;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * The signed-in user as kept in the HTTP session: just what requests need to identify
+ * the user and greet them. Immutable and small, so sessions stay cheap to hold and to
+ * serialize; anything else is loaded by ID when a page needs it.
+ */
+public record SessionUser(Long id, String username, String fullName) implements Serializable {
+    
+    // Session attribute holding the principal
+    public static final String SESSION_ATTRIBUTE = "user";
+    
+    public static SessionUser of(User user) {
+        return new SessionUser(user.getId(), user.getUsername(), user.getFullName());
+    }
+    
+    // Serialized as the compact form, without the record's field descriptors (and those of Long and Number)
+    @Serial
+    private Object writeReplace() {
+        return new Compact(this);
+    }
+    
+    /**
+     * Serialized form of a {@link SessionUser}: the fields as raw values, each with a null flag
+     */
+    private static final class Compact implements Externalizable {
+        
+        @Serial
+        private static final long serialVersionUID = 1L;
+        
+        private SessionUser user;
+        
+        // For deserialization only
+        public Compact() {}
+        
+        Compact(SessionUser user) {
+            this.user = user;
+        }
+        
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeBoolean(user.id() != null);
+            if (user.id() != null) {
+                out.writeLong(user.id());
+            }
+            writeNullable(out, user.username());
+            writeNullable(out, user.fullName());
+        }
+        
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            Long id = in.readBoolean() ? in.readLong() : null;
+            user = new SessionUser(id, readNullable(in), readNullable(in));
+        }
+        
+        @Serial
+        private Object readResolve() {
+            return user;
+        }
+        
+        private static void writeNullable(ObjectOutput out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+        
+        private static String readNullable(ObjectInput in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    }
+}
@@ -3,11 +3,11 @@ package com.medicine.site.entity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items", uniqueConstraints =
+        @UniqueConstraint(name = "uk_cart_items_user_medicine", columnNames = {"user_id", "medicine_id"}))
 public class Cart {
     
     @Id
@@ -29,10 +29,10 @@ public class Cart {
     private Integer quantity;
     
     @Column(name = "unit_price", precision = 10, scale = 2)
-    private BigDecimal unitPrice;
+    private Money unitPrice;
     
     @Column(name = "total_price", precision = 10, scale = 2)
-    private BigDecimal totalPrice;
+    private Money totalPrice;
     
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -68,7 +68,7 @@ public class Cart {
     private void calculatePrices() {
         if (medicine != null && medicine.getPrice() != null) {
             this.unitPrice = medicine.getPrice();
-            this.totalPrice = unitPrice.multiply(BigDecimal.valueOf(quantity));
+            this.totalPrice = unitPrice.times(quantity);
         }
     }
     
@@ -107,19 +107,19 @@ public class Cart {
         calculatePrices();
     }
     
-    public BigDecimal getUnitPrice() {
+    public Money getUnitPrice() {
         return unitPrice;
     }
     
-    public void setUnitPrice(BigDecimal unitPrice) {
+    public void setUnitPrice(Money unitPrice) {
         this.unitPrice = unitPrice;
     }
     
-    public BigDecimal getTotalPrice() {
+    public Money getTotalPrice() {
         return totalPrice;
     }
     
-    public void setTotalPrice(BigDecimal totalPrice) {
+    public void setTotalPrice(Money totalPrice) {
         this.totalPrice = totalPrice;
     }
     
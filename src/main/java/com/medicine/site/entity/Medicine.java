@@ -1,15 +1,19 @@
 package com.medicine.site.entity;
 
 import jakarta.persistence.*;
-import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
-import java.math.BigDecimal;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "medicines")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "medicine")
 public class Medicine {
     
     @Id
@@ -41,14 +45,20 @@ public class Medicine {
     private String description;
     
     @NotNull(message = "Price is required")
-    @DecimalMin(value = "0.0", inclusive = false, message = "Price must be greater than 0")
     @Column(name = "price", nullable = false, precision = 10, scale = 2)
-    private BigDecimal price;
+    private Money price;
     
+    // Set on insert only; afterwards written in SQL by MedicineRepository.setStock and the
+    // reservation flush, so a stale edit of the other columns can never overwrite it
     @NotNull(message = "Stock quantity is required")
-    @Column(name = "stock_quantity", nullable = false)
+    @Column(name = "stock_quantity", nullable = false, updatable = false)
     private Integer stockQuantity;
     
+    // Cart reservations already subtracted from stock_quantity; written only by StockReservationService
+    @ColumnDefault("0")
+    @Column(name = "reserved_quantity", nullable = false, insertable = false, updatable = false)
+    private Integer reservedQuantity;
+    
     @Size(max = 50, message = "Dosage form must not exceed 50 characters")
     @Column(name = "dosage_form")
     private String dosageForm; // Tablet, Capsule, Syrup, etc.
@@ -72,6 +82,13 @@ public class Medicine {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // Optimistic lock; admin stock changes bump it through MedicineRepository.setStock, the
+    // reservation write-behind does not (edits cannot touch the stock columns anyway)
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -88,7 +105,7 @@ public class Medicine {
     
     // Constructor for creating medicine
     public Medicine(String name, String genericName, String manufacturer, String category, 
-                   String description, BigDecimal price, Integer stockQuantity) {
+                   String description, Money price, Integer stockQuantity) {
         this.name = name;
         this.genericName = genericName;
         this.manufacturer = manufacturer;
@@ -149,14 +166,19 @@ public class Medicine {
         this.description = description;
     }
     
-    public BigDecimal getPrice() {
+    public Money getPrice() {
         return price;
     }
     
-    public void setPrice(BigDecimal price) {
+    public void setPrice(Money price) {
         this.price = price;
     }
     
+    @AssertTrue(message = "Price must be greater than 0")
+    public boolean isPricePositive() {
+        return price == null || price.isPositive();
+    }
+    
     public Integer getStockQuantity() {
         return stockQuantity;
     }
@@ -165,6 +187,14 @@ public class Medicine {
         this.stockQuantity = stockQuantity;
     }
     
+    public Integer getReservedQuantity() {
+        return reservedQuantity;
+    }
+    
+    public void setReservedQuantity(Integer reservedQuantity) {
+        this.reservedQuantity = reservedQuantity;
+    }
+    
     public String getDosageForm() {
         return dosageForm;
     }
@@ -220,4 +250,12 @@ public class Medicine {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
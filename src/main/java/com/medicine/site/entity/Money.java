@@ -0,0 +1,98 @@
+package com.medicine.site.entity;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money held as a whole number of cents.
+ *
+ * Immutable, so Hibernate never has to deep-copy it, and its arithmetic is plain
+ * {@code long} arithmetic (overflow-checked) instead of {@code BigDecimal} allocation.
+ * Stored in the DECIMAL(10,2) price columns through {@link MoneyConverter}; prints and
+ * serializes as a plain two-decimal amount, e.g. {@code 12.50}.
+ */
+public final class Money implements Comparable<Money>, Serializable {
+    
+    public static final Money ZERO = new Money(0);
+    
+    private final long cents;
+    
+    private Money(long cents) {
+        this.cents = cents;
+    }
+    
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+    
+    /**
+     * Convert a decimal amount, rounding half up to whole cents
+     */
+    @JsonCreator
+    public static Money of(BigDecimal amount) {
+        return ofCents(amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+    
+    public static Money of(String amount) {
+        return of(new BigDecimal(amount));
+    }
+    
+    public long getCents() {
+        return cents;
+    }
+    
+    public Money plus(Money other) {
+        return other.cents == 0 ? this : ofCents(Math.addExact(cents, other.cents));
+    }
+    
+    public Money minus(Money other) {
+        return other.cents == 0 ? this : ofCents(Math.subtractExact(cents, other.cents));
+    }
+    
+    public Money times(long quantity) {
+        return quantity == 1 ? this : ofCents(Math.multiplyExact(cents, quantity));
+    }
+    
+    public Money negate() {
+        return ofCents(Math.negateExact(cents));
+    }
+    
+    public boolean isPositive() {
+        return cents > 0;
+    }
+    
+    public int signum() {
+        return Long.signum(cents);
+    }
+    
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, 2);
+    }
+    
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        return this == other || (other instanceof Money money && money.cents == cents);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+    
+    @Override
+    public String toString() {
+        long whole = Math.abs(cents / 100);
+        long fraction = Math.abs(cents % 100);
+        return (cents < 0 ? "-" : "") + whole + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
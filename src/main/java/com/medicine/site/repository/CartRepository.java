@@ -1,15 +1,21 @@
 package com.medicine.site.repository;
 
 import com.medicine.site.entity.Cart;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CartRepository extends JpaRepository<Cart, Long> {
+public interface CartRepository extends JpaRepository<Cart, Long>, CartRepositoryCustom {
     
     // Find all cart items for a user
     List<Cart> findByUserId(Long userId);
@@ -17,6 +23,16 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     // Find cart item by user and medicine
     Optional<Cart> findByUserIdAndMedicineId(Long userId, Long medicineId);
     
+    // Find cart item by user and medicine, locked until the transaction ends so its quantity cannot change underneath
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cart c WHERE c.userId = :userId AND c.medicine.id = :medicineId")
+    Optional<Cart> findForUpdate(@Param("userId") Long userId, @Param("medicineId") Long medicineId);
+    
+    // Find all cart items for a user, locked until the transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cart c WHERE c.userId = :userId")
+    List<Cart> findByUserIdForUpdate(@Param("userId") Long userId);
+    
     // Check if cart item exists for user and medicine
     boolean existsByUserIdAndMedicineId(Long userId, Long medicineId);
     
@@ -24,21 +40,49 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     @Query("SELECT COUNT(c) FROM Cart c WHERE c.userId = :userId")
     Long countByUserId(@Param("userId") Long userId);
     
-    // Calculate total cart value for a user
-    @Query("SELECT COALESCE(SUM(c.totalPrice), 0) FROM Cart c WHERE c.userId = :userId")
-    java.math.BigDecimal getTotalCartValue(@Param("userId") Long userId);
+    // Find the user's lines for some medicines without loading entities (line ID, medicine ID, quantity, unit price)
+    @Query("SELECT c.id, c.medicine.id, c.quantity, c.unitPrice FROM Cart c " +
+           "WHERE c.userId = :userId AND c.medicine.id IN :medicineIds")
+    List<Object[]> findLinesForMedicines(@Param("userId") Long userId,
+                                         @Param("medicineIds") Collection<Long> medicineIds);
+    
+    // Count lines and sum their value for a user in one query (line count, total value)
+    @Query("SELECT COUNT(c), COALESCE(SUM(c.totalPrice), 0) FROM Cart c WHERE c.userId = :userId")
+    List<Object[]> getCartTotals(@Param("userId") Long userId);
     
     // Find cart items with medicine details
     @Query("SELECT c FROM Cart c JOIN FETCH c.medicine WHERE c.userId = :userId")
     List<Cart> findByUserIdWithMedicine(@Param("userId") Long userId);
     
-    // Delete all cart items for a user
-    void deleteByUserId(Long userId);
+    // Delete all cart items for a user in one statement (a derived delete loads and deletes them one by one);
+    // returns the number deleted
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Cart c WHERE c.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
     
-    // Delete specific cart item for a user
-    void deleteByUserIdAndMedicineId(Long userId, Long medicineId);
+    // Delete specific cart item for a user in one statement; returns the number deleted
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Cart c WHERE c.userId = :userId AND c.medicine.id = :medicineId")
+    int deleteByUserIdAndMedicineId(@Param("userId") Long userId, @Param("medicineId") Long medicineId);
     
     // Find cart items with low stock
     @Query("SELECT c FROM Cart c WHERE c.userId = :userId AND c.quantity > c.medicine.stockQuantity")
     List<Cart> findItemsWithInsufficientStock(@Param("userId") Long userId);
+    
+    // Find lines not changed since the cutoff, oldest first (line ID, user ID, medicine ID, quantity)
+    @Query("SELECT c.id, c.userId, c.medicine.id, c.quantity FROM Cart c WHERE c.updatedAt < :cutoff ORDER BY c.updatedAt")
+    List<Object[]> findLinesUpdatedBefore(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+    
+    // Delete the given lines unless they changed since the cutoff; returns the number deleted
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Cart c WHERE c.id IN :ids AND c.updatedAt < :cutoff")
+    int deleteLinesUpdatedBefore(@Param("ids") Collection<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+    
+    // Which of the given line IDs still exist
+    @Query("SELECT c.id FROM Cart c WHERE c.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+    
+    // Count cart lines per medicine (medicine ID, line count)
+    @Query("SELECT c.medicine.id, COUNT(c) FROM Cart c GROUP BY c.medicine.id")
+    List<Object[]> countCartLinesByMedicine();
 }
@@ -0,0 +1,39 @@
+package com.medicine.site.repository;
+
+import com.medicine.site.entity.Money;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Single-statement cart writes
+ */
+public interface CartRepositoryCustom {
+    
+    // Insert the cart line, or add to its quantity if the user already has one, in one atomic
+    // statement; returns the resulting line, or null if the medicine does not exist or is inactive
+    UpsertedLine upsertQuantity(Long userId, Long medicineId, int quantity);
+    
+    // Write the new quantities and totals of some cart lines and delete others, as two JDBC batches,
+    // each only where the line still has the quantity it was read with; false if any line changed
+    // or disappeared in between, in which case the caller must roll back
+    boolean applyLineChanges(List<LineChange> updates, List<LineChange> deletions);
+    
+    // Delete cart lines as one JDBC batch; returns the IDs of the lines this call deleted, leaving out
+    // any a concurrent request removed first
+    List<Long> deleteLines(List<Long> lineIds);
+    
+    // Bring the unit and total prices of every cart line of the given medicines in line with the
+    // current medicine prices, in one set-based UPDATE; returns the number of lines repriced
+    int repriceLines(Collection<Long> medicineIds);
+    
+    /**
+     * Quantity and unit price of a cart line after an upsert
+     */
+    record UpsertedLine(int quantity, Money unitPrice) {}
+    
+    /**
+     * New quantity and total price of an existing cart line, and the quantity it was read with
+     */
+    record LineChange(Long lineId, int previousQuantity, int quantity, Money totalPrice) {}
+}
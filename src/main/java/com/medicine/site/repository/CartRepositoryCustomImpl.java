@@ -0,0 +1,191 @@
+package com.medicine.site.repository;
+
+import com.medicine.site.entity.Cart;
+import com.medicine.site.entity.Money;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CartRepositoryCustomImpl implements CartRepositoryCustom {
+    
+    // The source row only exists for an active medicine, so a missing or inactive medicine
+    // matches nothing and the statement writes nothing
+    private static final String MERGE_SOURCE =
+            "USING (SELECT m.id AS medicine_id, m.price AS price FROM medicines m WHERE m.id = ? AND m.is_active = ?) src " +
+            "ON c.user_id = ? AND c.medicine_id = src.medicine_id " +
+            "WHEN MATCHED THEN UPDATE SET quantity = c.quantity + ?, unit_price = src.price, " +
+            "total_price = src.price * (c.quantity + ?), updated_at = ? " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, medicine_id, quantity, unit_price, total_price, created_at, updated_at) " +
+            "VALUES (?, src.medicine_id, ?, src.price, src.price * ?, ?, ?)";
+    
+    // HOLDLOCK keeps the key range locked between the match and the insert, so two
+    // concurrent adds of the same medicine cannot both take the insert branch
+    private static final String SQL_SERVER_UPSERT =
+            "MERGE cart_items WITH (HOLDLOCK) AS c " + MERGE_SOURCE + " OUTPUT inserted.quantity, inserted.unit_price;";
+    
+    // H2 has no OUTPUT clause; its data change delta table returns the merged row instead
+    private static final String H2_UPSERT =
+            "SELECT quantity, unit_price FROM FINAL TABLE (MERGE INTO cart_items c " + MERGE_SOURCE + ")";
+    
+    // The quantity the line was read with is the version: a concurrent change makes these match nothing
+    private static final String UPDATE_LINE_SQL =
+            "UPDATE cart_items SET quantity = ?, total_price = ?, updated_at = ? WHERE id = ? AND quantity = ?";
+    
+    private static final String DELETE_CHANGED_LINE_SQL = "DELETE FROM cart_items WHERE id = ? AND quantity = ?";
+    
+    private static final String DELETE_LINE_SQL = "DELETE FROM cart_items WHERE id = ?";
+    
+    // Medicine IDs per reprice statement (SQL Server allows 2100 parameters)
+    private static final int MAX_REPRICE_IDS = 1000;
+    
+    private static final String SQL_SERVER_REPRICE =
+            "UPDATE c SET c.unit_price = m.price, c.total_price = m.price * c.quantity, c.updated_at = ? " +
+            "FROM cart_items c JOIN medicines m ON m.id = c.medicine_id " +
+            "WHERE c.medicine_id IN (%s) AND (c.unit_price IS NULL OR c.unit_price <> m.price)";
+    
+    // H2 has no UPDATE ... FROM; the same statement with correlated subqueries
+    private static final String H2_REPRICE =
+            "UPDATE cart_items c SET unit_price = (SELECT m.price FROM medicines m WHERE m.id = c.medicine_id), " +
+            "total_price = (SELECT m.price FROM medicines m WHERE m.id = c.medicine_id) * c.quantity, updated_at = ? " +
+            "WHERE c.medicine_id IN (%s) " +
+            "AND (c.unit_price IS NULL OR c.unit_price <> (SELECT m.price FROM medicines m WHERE m.id = c.medicine_id))";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private volatile Boolean h2;
+    
+    @Override
+    public UpsertedLine upsertQuantity(Long userId, Long medicineId, int quantity) {
+        try {
+            return upsert(userId, medicineId, quantity);
+        } catch (DuplicateKeyException e) {
+            // Lost an insert race on the unique key (only possible without HOLDLOCK): the row exists now
+            return upsert(userId, medicineId, quantity);
+        }
+    }
+    
+    @Override
+    public boolean applyLineChanges(List<LineChange> updates, List<LineChange> deletions) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (!updates.isEmpty()) {
+            List<Object[]> rows = new ArrayList<>(updates.size());
+            for (LineChange update : updates) {
+                rows.add(new Object[]{update.quantity(), update.totalPrice().toBigDecimal(), now,
+                        update.lineId(), update.previousQuantity()});
+            }
+            if (!allWritten(jdbcTemplate.batchUpdate(UPDATE_LINE_SQL, rows))) {
+                return false;
+            }
+        }
+        if (!deletions.isEmpty()) {
+            List<Object[]> rows = new ArrayList<>(deletions.size());
+            for (LineChange deletion : deletions) {
+                rows.add(new Object[]{deletion.lineId(), deletion.previousQuantity()});
+            }
+            return allWritten(jdbcTemplate.batchUpdate(DELETE_CHANGED_LINE_SQL, rows));
+        }
+        return true;
+    }
+    
+    @Override
+    public List<Long> deleteLines(List<Long> lineIds) {
+        if (lineIds.isEmpty()) {
+            return List.of();
+        }
+        entityManager.flush();
+        List<Object[]> rows = new ArrayList<>(lineIds.size());
+        for (Long lineId : lineIds) {
+            rows.add(new Object[]{lineId});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(DELETE_LINE_SQL, rows);
+        List<Long> deleted = new ArrayList<>(lineIds.size());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                deleted.add(lineIds.get(i));
+            }
+        }
+        return deleted;
+    }
+    
+    private static boolean allWritten(int[] counts) {
+        for (int count : counts) {
+            if (count == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public int repriceLines(Collection<Long> medicineIds) {
+        List<Long> ids = new ArrayList<>(medicineIds);
+        entityManager.flush();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int repriced = 0;
+        for (int from = 0; from < ids.size(); from += MAX_REPRICE_IDS) {
+            List<Long> chunk = ids.subList(from, Math.min(from + MAX_REPRICE_IDS, ids.size()));
+            String sql = String.format(isH2() ? H2_REPRICE : SQL_SERVER_REPRICE,
+                    String.join(", ", Collections.nCopies(chunk.size(), "?")));
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(now);
+            args.addAll(chunk);
+            repriced += jdbcTemplate.update(sql, args.toArray());
+        }
+        if (repriced > 0) {
+            refreshLoadedLines(medicineIds);
+        }
+        return repriced;
+    }
+    
+    // Cart lines of these medicines loaded earlier in this transaction hold the old prices; reload
+    // just those, leaving the caller's other entities managed
+    private void refreshLoadedLines(Collection<Long> medicineIds) {
+        Set<Long> repricedIds = new HashSet<>(medicineIds);
+        for (Map.Entry<Object, EntityEntry> entry : entityManager.unwrap(SessionImplementor.class)
+                .getPersistenceContextInternal().reentrantSafeEntityEntries()) {
+            if (entry.getKey() instanceof Cart line && repricedIds.contains(line.getMedicine().getId())) {
+                entityManager.refresh(line);
+            }
+        }
+    }
+    
+    private UpsertedLine upsert(Long userId, Long medicineId, int quantity) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<UpsertedLine> lines = jdbcTemplate.query(isH2() ? H2_UPSERT : SQL_SERVER_UPSERT,
+                (rs, row) -> new UpsertedLine(rs.getInt(1), Money.of(rs.getBigDecimal(2))),
+                medicineId, true, userId,
+                quantity, quantity, now,
+                userId, quantity, quantity, now, now);
+        return lines.isEmpty() ? null : lines.get(0);
+    }
+    
+    private boolean isH2() {
+        Boolean result = h2;
+        if (result == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            result = "H2".equals(product);
+            h2 = result;
+        }
+        return result;
+    }
+}
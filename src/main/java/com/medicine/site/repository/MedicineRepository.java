@@ -1,16 +1,22 @@
 package com.medicine.site.repository;
 
 import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface MedicineRepository extends JpaRepository<Medicine, Long> {
+public interface MedicineRepository extends JpaRepository<Medicine, Long>, JpaSpecificationExecutor<Medicine>,
+        MedicineRepositoryCustom {
     
     // Find all active medicines
     List<Medicine> findByIsActiveTrue();
@@ -54,13 +60,13 @@ public interface MedicineRepository extends JpaRepository<Medicine, Long> {
     
     // Find medicines by price range
     @Query("SELECT m FROM Medicine m WHERE m.price BETWEEN :minPrice AND :maxPrice AND m.isActive = true")
-    List<Medicine> findByPriceRange(@Param("minPrice") java.math.BigDecimal minPrice, 
-                                   @Param("maxPrice") java.math.BigDecimal maxPrice);
+    List<Medicine> findByPriceRange(@Param("minPrice") Money minPrice, 
+                                   @Param("maxPrice") Money maxPrice);
     
     // Find medicines by price range with pagination
     @Query("SELECT m FROM Medicine m WHERE m.price BETWEEN :minPrice AND :maxPrice AND m.isActive = true")
-    Page<Medicine> findByPriceRange(@Param("minPrice") java.math.BigDecimal minPrice, 
-                                   @Param("maxPrice") java.math.BigDecimal maxPrice, 
+    Page<Medicine> findByPriceRange(@Param("minPrice") Money minPrice, 
+                                   @Param("maxPrice") Money maxPrice, 
                                    Pageable pageable);
     
     // Find medicines that require prescription
@@ -77,11 +83,15 @@ public interface MedicineRepository extends JpaRepository<Medicine, Long> {
     @Query("SELECT m FROM Medicine m WHERE m.stockQuantity > 0 AND m.isActive = true")
     Page<Medicine> findInStock(Pageable pageable);
     
-    // Get all unique categories
+    // Get all unique categories (query cache)
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "medicine-facets")})
     @Query("SELECT DISTINCT m.category FROM Medicine m WHERE m.isActive = true ORDER BY m.category")
     List<String> findDistinctCategories();
     
-    // Get all unique manufacturers
+    // Get all unique manufacturers (query cache)
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "medicine-facets")})
     @Query("SELECT DISTINCT m.manufacturer FROM Medicine m WHERE m.isActive = true ORDER BY m.manufacturer")
     List<String> findDistinctManufacturers();
     
@@ -0,0 +1,41 @@
+package com.medicine.site.repository;
+
+import com.medicine.site.dto.MedicineSummary;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catalog list queries that select only the {@link MedicineSummary} columns,
+ * and set-based stock and price updates
+ */
+public interface MedicineRepositoryCustom {
+    
+    // Find one page of medicine summaries matching the specification
+    Page<MedicineSummary> findSummaries(Specification<Medicine> specification, Pageable pageable);
+    
+    // Find medicine summaries with keyset (seek) pagination; the sort must end with a unique key
+    Window<MedicineSummary> scrollSummaries(Specification<Medicine> specification, KeysetScrollPosition position,
+                                            int limit, Sort sort);
+    
+    // Find medicine summaries by ID (in no particular order)
+    List<MedicineSummary> findSummariesByIds(Collection<Long> ids);
+    
+    // Take the quantity from stock in one conditional UPDATE; false if the medicine has less than that in stock
+    boolean decrementStock(Long medicineId, int quantity);
+    
+    // Overwrite the stock quantity in one UPDATE; false if the medicine does not exist
+    boolean setStock(Long medicineId, int quantity);
+    
+    // Set the prices of the given medicines as one JDBC batch; returns the IDs of the medicines that exist
+    List<Long> setPrices(Map<Long, Money> prices);
+}
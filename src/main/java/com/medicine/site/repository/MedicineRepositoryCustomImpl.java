@@ -0,0 +1,276 @@
+package com.medicine.site.repository;
+
+import com.medicine.site.dto.MedicineSummary;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.query.NullPrecedence;
+import org.hibernate.query.criteria.JpaOrder;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MedicineRepositoryCustomImpl implements MedicineRepositoryCustom {
+    
+    // Stock updates go straight to JDBC: a JPQL or native bulk update would make Hibernate
+    // drop the whole medicine cache region, where only one entry is stale
+    private static final String DECREMENT_STOCK_SQL =
+            "UPDATE medicines SET stock_quantity = stock_quantity - ?, version = version + 1, updated_at = ? " +
+            "WHERE id = ? AND stock_quantity >= ?";
+    
+    private static final String SET_STOCK_SQL =
+            "UPDATE medicines SET stock_quantity = ?, version = version + 1, updated_at = ? WHERE id = ?";
+    
+    private static final String SET_PRICE_SQL =
+            "UPDATE medicines SET price = ?, version = version + 1, updated_at = ? WHERE id = ?";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public Page<MedicineSummary> findSummaries(Specification<Medicine> specification, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<MedicineSummary> query = cb.createQuery(MedicineSummary.class);
+        Root<Medicine> root = query.from(Medicine.class);
+        selectSummary(query, root, cb);
+        query.where(specification.toPredicate(root, query, cb));
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        
+        List<MedicineSummary> content = entityManager.createQuery(query)
+                .setFirstResult(pageable.isPaged() ? (int) pageable.getOffset() : 0)
+                .setMaxResults(pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE)
+                .getResultList();
+        
+        // Only count when the page alone cannot tell the total
+        if (pageable.isUnpaged() || (content.size() < pageable.getPageSize() && (pageable.getOffset() == 0 || !content.isEmpty()))) {
+            long total = pageable.isPaged() ? pageable.getOffset() + content.size() : content.size();
+            return new PageImpl<>(content, pageable, total);
+        }
+        return new PageImpl<>(content, pageable, count(specification));
+    }
+    
+    @Override
+    public boolean decrementStock(Long medicineId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        entityManager.flush();
+        int updated = jdbcTemplate.update(DECREMENT_STOCK_SQL,
+                quantity, Timestamp.valueOf(LocalDateTime.now()), medicineId, quantity);
+        if (updated > 0) {
+            evict(medicineId);
+        }
+        return updated > 0;
+    }
+    
+    @Override
+    public boolean setStock(Long medicineId, int quantity) {
+        entityManager.flush();
+        int updated = jdbcTemplate.update(SET_STOCK_SQL,
+                quantity, Timestamp.valueOf(LocalDateTime.now()), medicineId);
+        if (updated > 0) {
+            evict(medicineId);
+        }
+        return updated > 0;
+    }
+    
+    @Override
+    public List<Long> setPrices(Map<Long, Money> prices) {
+        List<Long> updatedIds = new ArrayList<>(prices.size());
+        if (prices.isEmpty()) {
+            return updatedIds;
+        }
+        entityManager.flush();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Long> ids = new ArrayList<>(prices.keySet());
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            rows.add(new Object[]{prices.get(id).toBigDecimal(), now, id});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(SET_PRICE_SQL, rows);
+        for (int i = 0; i < counts.length; i++) {
+            // Some drivers only report that a batched statement succeeded, not how many rows it changed
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                evict(ids.get(i));
+                updatedIds.add(ids.get(i));
+            }
+        }
+        return updatedIds;
+    }
+    
+    @Override
+    public Window<MedicineSummary> scrollSummaries(Specification<Medicine> specification, KeysetScrollPosition position,
+                                                   int limit, Sort sort) {
+        // Scrolling backward runs the query in reverse order and flips the rows back afterwards
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            orders.add(position.scrollsBackward() ? order.with(order.getDirection().isAscending()
+                    ? Sort.Direction.DESC : Sort.Direction.ASC) : order);
+        }
+        
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<MedicineSummary> query = cb.createQuery(MedicineSummary.class);
+        Root<Medicine> root = query.from(Medicine.class);
+        selectSummary(query, root, cb);
+        
+        Predicate where = specification.toPredicate(root, query, cb);
+        if (!position.isInitial()) {
+            Predicate seek = seekPredicate(orders, position.getKeys(), root, cb);
+            where = where == null ? seek : cb.and(where, seek);
+        }
+        if (where != null) {
+            query.where(where);
+        }
+        query.orderBy(keysetOrders(orders, root, cb));
+        
+        List<MedicineSummary> rows = entityManager.createQuery(query)
+                .setMaxResults(limit + 1)
+                .getResultList();
+        boolean hasMore = rows.size() > limit;
+        List<MedicineSummary> content = new ArrayList<>(hasMore ? rows.subList(0, limit) : rows);
+        if (position.scrollsBackward()) {
+            Collections.reverse(content);
+        }
+        return Window.from(content, index -> ScrollPosition.forward(keysOf(content.get(index), sort)), hasMore);
+    }
+    
+    @Override
+    public List<MedicineSummary> findSummariesByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<MedicineSummary> query = cb.createQuery(MedicineSummary.class);
+        Root<Medicine> root = query.from(Medicine.class);
+        selectSummary(query, root, cb);
+        query.where(root.get("id").in(ids));
+        return entityManager.createQuery(query).getResultList();
+    }
+    
+    /**
+     * Forget every cached copy of a medicine changed behind Hibernate's back. The
+     * second-level cache entry is evicted again after commit, in case a concurrent
+     * reader cached the old row in between.
+     */
+    private void evict(Long medicineId) {
+        Medicine managed = entityManager.getReference(Medicine.class, medicineId);
+        entityManager.detach(managed);
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        cache.evict(Medicine.class, medicineId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.evict(Medicine.class, medicineId);
+                }
+            });
+        }
+    }
+    
+    private long count(Specification<Medicine> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Medicine> root = query.from(Medicine.class);
+        query.select(cb.count(root));
+        query.where(specification.toPredicate(root, query, cb));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+    
+    private static void selectSummary(CriteriaQuery<MedicineSummary> query, Root<Medicine> root, CriteriaBuilder cb) {
+        query.select(cb.construct(MedicineSummary.class,
+                root.get("id"),
+                root.get("name"),
+                root.get("genericName"),
+                root.get("manufacturer"),
+                root.get("category"),
+                cb.substring(root.get("description"), 1, MedicineSummary.SHORT_DESCRIPTION_LENGTH),
+                root.get("price"),
+                root.get("stockQuantity"),
+                root.get("requiresPrescription"),
+                root.get("createdAt")));
+    }
+    
+    /**
+     * ORDER BY for keyset paging, with NULL sorting below every value in both directions
+     * (the native order of SQL Server and H2, so no extra SQL), as the seek predicate assumes
+     */
+    private static List<Order> keysetOrders(List<Sort.Order> orders, Root<Medicine> root, CriteriaBuilder cb) {
+        List<Order> result = new ArrayList<>(orders.size());
+        for (Sort.Order order : orders) {
+            Expression<?> key = root.get(order.getProperty());
+            JpaOrder jpaOrder = (JpaOrder) (order.isAscending() ? cb.asc(key) : cb.desc(key));
+            result.add(jpaOrder.nullPrecedence(order.isAscending() ? NullPrecedence.FIRST : NullPrecedence.LAST));
+        }
+        return result;
+    }
+    
+    /**
+     * Rows strictly after the boundary row in the given order:
+     * (k1 > v1) OR (k1 = v1 AND k2 > v2) OR ...
+     * A NULL key sorts below every value, and "k = NULL" is spelled k IS NULL
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate seekPredicate(List<Sort.Order> orders, Map<String, Object> keys,
+                                           Root<Medicine> root, CriteriaBuilder cb) {
+        List<Predicate> alternatives = new ArrayList<>(orders.size());
+        List<Predicate> equalPrefix = new ArrayList<>(orders.size());
+        for (Sort.Order order : orders) {
+            Expression<Comparable> key = root.get(order.getProperty());
+            Comparable value = (Comparable) keys.get(order.getProperty());
+            Predicate beyond;
+            if (value == null) {
+                // Ascending, every non-NULL value follows a NULL; descending, nothing does
+                beyond = order.isAscending() ? cb.isNotNull(key) : cb.disjunction();
+            } else {
+                beyond = order.isAscending() ? cb.greaterThan(key, value) : cb.or(cb.lessThan(key, value), cb.isNull(key));
+            }
+            
+            List<Predicate> alternative = new ArrayList<>(equalPrefix);
+            alternative.add(beyond);
+            alternatives.add(cb.and(alternative.toArray(new Predicate[0])));
+            equalPrefix.add(value == null ? cb.isNull(key) : cb.equal(key, value));
+        }
+        return cb.or(alternatives.toArray(new Predicate[0]));
+    }
+    
+    private static Map<String, Object> keysOf(MedicineSummary summary, Sort sort) {
+        BeanWrapperImpl properties = new BeanWrapperImpl(summary);
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (Sort.Order order : sort) {
+            keys.put(order.getProperty(), properties.getPropertyValue(order.getProperty()));
+        }
+        return keys;
+    }
+}
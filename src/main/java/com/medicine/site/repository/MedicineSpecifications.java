@@ -0,0 +1,73 @@
+package com.medicine.site.repository;
+
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Composable criteria for catalog queries on {@link Medicine}
+ */
+public final class MedicineSpecifications {
+    
+    private MedicineSpecifications() {}
+    
+    // Only active medicines
+    public static Specification<Medicine> isActive() {
+        return (root, query, cb) -> cb.isTrue(root.get("isActive"));
+    }
+    
+    // Name, generic name or manufacturer contains the term (case insensitive)
+    public static Specification<Medicine> matchesSearch(String searchTerm) {
+        String pattern = "%" + searchTerm.trim().toLowerCase(Locale.ROOT) + "%";
+        return (root, query, cb) -> cb.or(
+                cb.like(cb.lower(root.get("name")), pattern),
+                cb.like(cb.lower(root.get("genericName")), pattern),
+                cb.like(cb.lower(root.get("manufacturer")), pattern));
+    }
+    
+    // Medicine ID is one of the given IDs
+    public static Specification<Medicine> idIn(Collection<Long> ids) {
+        return (root, query, cb) -> root.get("id").in(ids);
+    }
+    
+    // Medicines in a category
+    public static Specification<Medicine> inCategory(String category) {
+        return (root, query, cb) -> cb.equal(root.get("category"), category);
+    }
+    
+    // Medicines from a manufacturer
+    public static Specification<Medicine> fromManufacturer(String manufacturer) {
+        return (root, query, cb) -> cb.equal(root.get("manufacturer"), manufacturer);
+    }
+    
+    // Price within the range; either bound may be null
+    public static Specification<Medicine> priceBetween(BigDecimal minPrice, BigDecimal maxPrice) {
+        Money min = minPrice != null ? Money.of(minPrice) : null;
+        Money max = maxPrice != null ? Money.of(maxPrice) : null;
+        return (root, query, cb) -> {
+            if (min != null && max != null) {
+                return cb.between(root.get("price"), min, max);
+            }
+            if (min != null) {
+                return cb.greaterThanOrEqualTo(root.get("price"), min);
+            }
+            return cb.lessThanOrEqualTo(root.get("price"), max);
+        };
+    }
+    
+    // Medicines that do (or do not) require a prescription
+    public static Specification<Medicine> requiresPrescription(boolean requiresPrescription) {
+        return (root, query, cb) -> requiresPrescription
+                ? cb.isTrue(root.get("requiresPrescription"))
+                : cb.or(cb.isFalse(root.get("requiresPrescription")), cb.isNull(root.get("requiresPrescription")));
+    }
+    
+    // Medicines with stock left
+    public static Specification<Medicine> inStock() {
+        return (root, query, cb) -> cb.greaterThan(root.get("stockQuantity"), 0);
+    }
+}
@@ -2,7 +2,10 @@ package com.medicine.site.repository;
 
 import com.medicine.site.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -25,4 +28,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     // Find active user by email
     Optional<User> findByEmailAndIsActiveTrue(String email);
+    
+    // Find active users whose username or email is the login, in one query; a username match comes first
+    @Query("SELECT u FROM User u WHERE (u.username = :login OR u.email = :login) AND u.isActive = true " +
+           "ORDER BY CASE WHEN u.username = :login THEN 0 ELSE 1 END")
+    List<User> findActiveByUsernameOrEmail(@Param("login") String login);
 }
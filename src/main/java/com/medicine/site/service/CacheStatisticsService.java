@@ -0,0 +1,135 @@
+package com.medicine.site.service;
+
+import com.medicine.site.dto.CacheRegionStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reads hit, miss, put and eviction counts of the Hibernate second-level cache regions
+ * and the application's own caches. Hits, misses and puts of the Hibernate regions come
+ * from Hibernate's statistics; evictions are only known to the cache provider, which
+ * publishes them through its JCache statistics MBean.
+ *
+ * The same counts are published as the meters cache.gets (result hit or miss), cache.puts,
+ * cache.evictions and cache.hit.ratio, tagged with the region name.
+ */
+@Service
+public class CacheStatisticsService implements MeterBinder {
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private CartService cartService;
+    
+    /**
+     * Get statistics for every second-level cache region
+     */
+    public List<CacheRegionStats> getRegionStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<CacheRegionStats> regions = new ArrayList<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics == null) {
+                continue;
+            }
+            regions.add(new CacheRegionStats(region,
+                    regionStatistics.getHitCount(),
+                    regionStatistics.getMissCount(),
+                    regionStatistics.getPutCount(),
+                    getEvictionCount(region)));
+        }
+        regions.add(cartService.getCartTotalsCacheStats());
+        return regions;
+    }
+    
+    /**
+     * Get statistics for one region, or null if the region does not exist
+     */
+    public CacheRegionStats getRegionStatistics(String region) {
+        CacheRegionStats cartTotals = cartService.getCartTotalsCacheStats();
+        if (cartTotals.getRegion().equals(region)) {
+            return cartTotals;
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+        if (regionStatistics == null) {
+            return null;
+        }
+        return new CacheRegionStats(region,
+                regionStatistics.getHitCount(),
+                regionStatistics.getMissCount(),
+                regionStatistics.getPutCount(),
+                getEvictionCount(region));
+    }
+    
+    /**
+     * Register the meters of every region known at startup
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (CacheRegionStats stats : getRegionStatistics()) {
+            String region = stats.getRegion();
+            FunctionCounter.builder("cache.gets", this, service -> count(region, CacheRegionStats::getHits))
+                    .tags("cache", region, "result", "hit")
+                    .description("Cache lookups that found an entry")
+                    .register(registry);
+            FunctionCounter.builder("cache.gets", this, service -> count(region, CacheRegionStats::getMisses))
+                    .tags("cache", region, "result", "miss")
+                    .description("Cache lookups that found nothing")
+                    .register(registry);
+            FunctionCounter.builder("cache.puts", this, service -> count(region, CacheRegionStats::getPuts))
+                    .tags("cache", region)
+                    .description("Entries put into the cache")
+                    .register(registry);
+            FunctionCounter.builder("cache.evictions", this, service -> count(region, CacheRegionStats::getEvictions))
+                    .tags("cache", region)
+                    .description("Entries evicted from the cache")
+                    .register(registry);
+            Gauge.builder("cache.hit.ratio", this, service -> {
+                        CacheRegionStats current = getRegionStatistics(region);
+                        return current == null ? Double.NaN : current.getHitRatio();
+                    })
+                    .tags("cache", region)
+                    .description("Share of lookups that hit since startup")
+                    .register(registry);
+        }
+    }
+    
+    private double count(String region, ToLongFunction<CacheRegionStats> count) {
+        CacheRegionStats stats = getRegionStatistics(region);
+        return stats == null ? 0 : count.applyAsLong(stats);
+    }
+    
+    private long getEvictionCount(String region) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Set<ObjectName> names = server.queryNames(
+                    new ObjectName("javax.cache:type=CacheStatistics,CacheManager=*,Cache=" + region), null);
+            long evictions = 0;
+            for (ObjectName name : names) {
+                evictions += ((Number) server.getAttribute(name, "CacheEvictions")).longValue();
+            }
+            return evictions;
+        } catch (Exception e) {
+            // Region has no statistics MBean (e.g. statistics disabled for it)
+            return 0;
+        }
+    }
+}
@@ -1,14 +1,34 @@
 package com.medicine.site.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.medicine.site.dto.CacheRegionStats;
+import com.medicine.site.dto.CartSummary;
+import com.medicine.site.dto.CartUpdateResult;
 import com.medicine.site.entity.Cart;
-import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
 import com.medicine.site.repository.CartRepository;
+import com.medicine.site.repository.CartRepositoryCustom.LineChange;
+import com.medicine.site.repository.CartRepositoryCustom.UpsertedLine;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -21,121 +41,358 @@ public class CartService {
     @Autowired
     private MedicineService medicineService;
     
+    @Autowired
+    private StockReservationService stockReservationService;
+    
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+    
+    // Most lines one batch update may touch; keeps the IN list far below SQL Server's 2100 parameters
+    private static final int MAX_BATCH_LINES = 500;
+    
+    // Rough heap cost of one cached entry: key, totals record, Money and the cache node
+    private static final long CART_TOTALS_ENTRY_BYTES = 160;
+    
+    @Value("${cart.totals-cache.maximum-size:100000}")
+    private long cartTotalsMaximumSize;
+    
+    @Value("${cart.totals-cache.expire-after-access:30m}")
+    private Duration cartTotalsExpireAfterAccess;
+    
+    // Untouched cart lines are dropped after this long, so abandoned carts stop holding stock
+    @Value("${cart.reservation-hold:24h}")
+    private Duration reservationHold;
+    
+    // Line count and total value per user, kept up to date by every cart change
+    private Cache<Long, CartTotals> cartTotals;
+    
+    @PostConstruct
+    void createCartTotalsCache() {
+        cartTotals = Caffeine.newBuilder()
+                .maximumSize(cartTotalsMaximumSize)
+                .expireAfterAccess(cartTotalsExpireAfterAccess)
+                .recordStats()
+                .build();
+    }
+    
     /**
-     * Add item to cart
+     * Add item to cart; returns the resulting quantity of the cart line
      */
-    public Cart addToCart(Long userId, Long medicineId, Integer quantity) {
-        // Check if medicine exists and is in stock
-        Optional<Medicine> medicineOptional = medicineService.getMedicineById(medicineId);
-        if (medicineOptional.isEmpty()) {
-            throw new RuntimeException("Medicine not found");
-        }
+    public Integer addToCart(Long userId, Long medicineId, Integer quantity) {
+        recordWrite(userId);
         
-        Medicine medicine = medicineOptional.get();
-        if (!medicine.getIsActive()) {
-            throw new RuntimeException("Medicine is not available");
-        }
+        // Reserve the added quantity in memory; the part already in the cart is reserved
+        reserve(medicineId, quantity);
         
-        if (medicine.getStockQuantity() < quantity) {
-            throw new RuntimeException("Insufficient stock. Available: " + medicine.getStockQuantity());
+        // Insert the cart line or add to it in one statement
+        UpsertedLine line = cartRepository.upsertQuantity(userId, medicineId, quantity);
+        if (line == null) {
+            throw new RuntimeException("Medicine is not available");
         }
         
-        // Check if item already exists in cart
-        Optional<Cart> existingCartItem = cartRepository.findByUserIdAndMedicineId(userId, medicineId);
-        
-        if (existingCartItem.isPresent()) {
-            // Update existing cart item
-            Cart cartItem = existingCartItem.get();
-            int newQuantity = cartItem.getQuantity() + quantity;
-            
-            if (medicine.getStockQuantity() < newQuantity) {
-                throw new RuntimeException("Insufficient stock. Available: " + medicine.getStockQuantity());
+        boolean newLine = line.quantity() == quantity;
+        Money addedValue = line.unitPrice().times(quantity);
+        afterCommit(() -> {
+            adjustCartTotals(userId, newLine ? 1 : 0, addedValue);
+            if (newLine) {
+                medicineService.recordCartAddition(medicineId);
             }
-            
-            cartItem.setQuantity(newQuantity);
-            return cartRepository.save(cartItem);
-        } else {
-            // Create new cart item
-            Cart cartItem = new Cart(userId, medicine, quantity);
-            return cartRepository.save(cartItem);
-        }
+        });
+        return line.quantity();
     }
     
     /**
      * Get user's cart items
      */
+    @Transactional(readOnly = true)
     public List<Cart> getUserCart(Long userId) {
         return cartRepository.findByUserIdWithMedicine(userId);
     }
     
+    /**
+     * Get the user's cart lines with their medicines, line count, total value and the lines
+     * short of stock, all from one query and one pass over its rows. The totals are only cached
+     * when they were read from the primary: a replica may lag behind, and the cache is kept up
+     * to date by applying each committed change to it.
+     */
+    @Transactional(readOnly = true)
+    public CartSummary getCartSummary(Long userId) {
+        List<Cart> items = cartRepository.findByUserIdWithMedicine(userId);
+        long totalCents = 0;
+        List<Cart> insufficientStockItems = null;
+        for (Cart item : items) {
+            if (item.getTotalPrice() != null) {
+                totalCents += item.getTotalPrice().getCents();
+            }
+            if (stockReservationService.getAvailable(item.getMedicine().getId()) < 0) {
+                if (insufficientStockItems == null) {
+                    insufficientStockItems = new ArrayList<>();
+                }
+                insufficientStockItems.add(item);
+            }
+        }
+        Money totalValue = Money.ofCents(totalCents);
+        if (ReadYourWritesTracker.isCurrentThreadPinned()) {
+            cartTotals.put(userId, new CartTotals(items.size(), totalValue));
+        }
+        return new CartSummary(items, items.size(), totalValue,
+                insufficientStockItems != null ? insufficientStockItems : Collections.emptyList());
+    }
+    
     /**
      * Update cart item quantity
      */
     public Cart updateCartItemQuantity(Long userId, Long medicineId, Integer newQuantity) {
-        Optional<Cart> cartItemOptional = cartRepository.findByUserIdAndMedicineId(userId, medicineId);
+        recordWrite(userId);
+        
+        // Locked until commit, so the reservation change below is based on the line's real quantity
+        Optional<Cart> cartItemOptional = cartRepository.findForUpdate(userId, medicineId);
         
         if (cartItemOptional.isEmpty()) {
             throw new RuntimeException("Cart item not found");
         }
         
+        Cart cartItem = cartItemOptional.get();
+        int currentQuantity = cartItem.getQuantity();
+        
         if (newQuantity <= 0) {
             // Remove item from cart
-            cartRepository.deleteByUserIdAndMedicineId(userId, medicineId);
+            removeLine(userId, cartItem);
             return null;
         }
         
-        // Check stock availability
-        Optional<Medicine> medicineOptional = medicineService.getMedicineById(medicineId);
-        if (medicineOptional.isPresent()) {
-            Medicine medicine = medicineOptional.get();
-            if (medicine.getStockQuantity() < newQuantity) {
-                throw new RuntimeException("Insufficient stock. Available: " + medicine.getStockQuantity());
-            }
+        // Reserve the increase, or give the decrease back once the change is committed
+        if (newQuantity > currentQuantity) {
+            reserve(medicineId, newQuantity - currentQuantity);
+        } else if (newQuantity < currentQuantity) {
+            afterCommit(() -> stockReservationService.release(medicineId, currentQuantity - newQuantity));
         }
         
-        Cart cartItem = cartItemOptional.get();
+        Money previousValue = lineValue(cartItem);
         cartItem.setQuantity(newQuantity);
-        return cartRepository.save(cartItem);
+        Cart saved = cartRepository.saveAndFlush(cartItem);
+        Money change = lineValue(saved).minus(previousValue);
+        afterCommit(() -> adjustCartTotals(userId, 0, change));
+        return saved;
+    }
+    
+    /**
+     * Set the quantities of several cart lines (medicine ID to quantity) in one transaction.
+     * One query loads the affected lines, stock for every increase is reserved before anything
+     * is written, and the changes go out as JDBC batches. A quantity of 0 or less removes the
+     * line; medicines not in the cart are ignored. If any line lacks stock nothing changes.
+     */
+    public CartUpdateResult updateCartQuantities(Long userId, Map<Long, Integer> quantities) {
+        recordWrite(userId);
+        
+        if (quantities.size() > MAX_BATCH_LINES) {
+            throw new RuntimeException("Too many cart lines in one update (at most " + MAX_BATCH_LINES + ")");
+        }
+        
+        List<LineChange> updates = new ArrayList<>();
+        List<LineChange> deletions = new ArrayList<>();
+        Map<Long, Integer> releases = new HashMap<>();
+        long valueChangeCents = 0;
+        
+        List<Object[]> lines = quantities.isEmpty() ? Collections.emptyList()
+                : cartRepository.findLinesForMedicines(userId, quantities.keySet());
+        for (Object[] line : lines) {
+            Long lineId = (Long) line[0];
+            Long medicineId = (Long) line[1];
+            int currentQuantity = (Integer) line[2];
+            Money unitPrice = line[3] != null ? (Money) line[3] : Money.ZERO;
+            Integer requested = quantities.get(medicineId);
+            if (requested == null || requested == currentQuantity) {
+                continue;
+            }
+            
+            long currentCents = unitPrice.times(currentQuantity).getCents();
+            if (requested <= 0) {
+                deletions.add(new LineChange(lineId, currentQuantity, 0, Money.ZERO));
+                releases.put(medicineId, currentQuantity);
+                valueChangeCents -= currentCents;
+                continue;
+            }
+            
+            if (requested > currentQuantity) {
+                try {
+                    reserve(medicineId, requested - currentQuantity);
+                } catch (RuntimeException e) {
+                    throw new RuntimeException("Medicine " + medicineId + ": " + e.getMessage(), e);
+                }
+            } else {
+                releases.put(medicineId, currentQuantity - requested);
+            }
+            Money newValue = unitPrice.times(requested);
+            updates.add(new LineChange(lineId, currentQuantity, requested, newValue));
+            valueChangeCents += newValue.getCents() - currentCents;
+        }
+        
+        if (updates.isEmpty() && deletions.isEmpty()) {
+            CartTotals totals = cartTotals(userId);
+            return new CartUpdateResult(0, 0, totals.count(), totals.total());
+        }
+        
+        // Every change is conditional on the quantity read above; if another request changed a line
+        // in between, roll everything back (and with it the reservations) rather than drift
+        if (!cartRepository.applyLineChanges(updates, deletions)) {
+            throw new RuntimeException("The cart was changed by another request; please try again");
+        }
+        
+        // Totals after the change: from the cache when the user is cached (it is adjusted after
+        // commit), otherwise from the database, which already sees this transaction's writes
+        long lineChange = -deletions.size();
+        Money totalChange = Money.ofCents(valueChangeCents);
+        CartTotals before = cartTotals.getIfPresent(userId);
+        CartTotals after;
+        if (before != null) {
+            after = new CartTotals(before.count() + lineChange, before.total().plus(totalChange));
+        } else {
+            after = loadCartTotals(userId);
+        }
+        
+        afterCommit(() -> {
+            releases.forEach(stockReservationService::release);
+            adjustCartTotals(userId, lineChange, totalChange);
+        });
+        return new CartUpdateResult(updates.size(), deletions.size(), after.count(), after.total());
     }
     
     /**
      * Remove item from cart
      */
     public void removeFromCart(Long userId, Long medicineId) {
-        cartRepository.deleteByUserIdAndMedicineId(userId, medicineId);
+        recordWrite(userId);
+        
+        cartRepository.findForUpdate(userId, medicineId).ifPresent(item -> removeLine(userId, item));
+    }
+    
+    /**
+     * Delete a locked cart line and, once committed, give back its reservation; only when this
+     * request is the one that deleted it, so two concurrent removes release it once
+     */
+    private void removeLine(Long userId, Cart item) {
+        if (cartRepository.deleteLines(List.of(item.getId())).isEmpty()) {
+            return;
+        }
+        Long medicineId = item.getMedicine().getId();
+        int quantity = item.getQuantity();
+        Money removedValue = lineValue(item);
+        afterCommit(() -> {
+            stockReservationService.release(medicineId, quantity);
+            adjustCartTotals(userId, -1, removedValue.negate());
+        });
     }
     
     /**
      * Clear user's cart
      */
     public void clearCart(Long userId) {
-        cartRepository.deleteByUserId(userId);
+        recordWrite(userId);
+        
+        // Only the lines read (and locked) here are deleted and released; a line added meanwhile stays
+        List<Cart> cartItems = cartRepository.findByUserIdForUpdate(userId);
+        List<Long> lineIds = new ArrayList<>(cartItems.size());
+        for (Cart item : cartItems) {
+            lineIds.add(item.getId());
+        }
+        List<Long> deleted = cartRepository.deleteLines(lineIds);
+        List<Cart> removed = new ArrayList<>(deleted.size());
+        long removedCents = 0;
+        for (Cart item : cartItems) {
+            if (deleted.contains(item.getId())) {
+                removed.add(item);
+                removedCents += lineValue(item).getCents();
+            }
+        }
+        Money removedValue = Money.ofCents(removedCents);
+        afterCommit(() -> {
+            for (Cart item : removed) {
+                stockReservationService.release(item.getMedicine().getId(), item.getQuantity());
+            }
+            adjustCartTotals(userId, -removed.size(), removedValue.negate());
+        });
     }
     
     /**
-     * Get cart item count for user
+     * Drop cart lines nobody touched for longer than the reservation hold and give their stock
+     * back, oldest first and at most one batch per run; returns the number of lines dropped
+     */
+    @Scheduled(fixedDelayString = "${cart.reservation-expiry-interval-ms:60000}")
+    public int expireAbandonedLines() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(reservationHold);
+        List<Object[]> lines = cartRepository.findLinesUpdatedBefore(cutoff, Limit.of(MAX_BATCH_LINES));
+        if (lines.isEmpty()) {
+            return 0;
+        }
+        List<Long> lineIds = new ArrayList<>(lines.size());
+        for (Object[] line : lines) {
+            lineIds.add((Long) line[0]);
+        }
+        int deleted = cartRepository.deleteLinesUpdatedBefore(lineIds, cutoff);
+        // Lines changed since they were read are kept, and so are their reservations
+        List<Long> kept = deleted == lines.size() ? List.of() : cartRepository.findExistingIds(lineIds);
+        List<Object[]> expired = new ArrayList<>(deleted);
+        for (Object[] line : lines) {
+            if (!kept.contains((Long) line[0])) {
+                expired.add(line);
+            }
+        }
+        afterCommit(() -> {
+            for (Object[] line : expired) {
+                stockReservationService.release((Long) line[2], (Integer) line[3]);
+                cartTotals.invalidate((Long) line[1]);
+            }
+        });
+        return expired.size();
+    }
+    
+    /**
+     * Get cart item count for user; a cache miss is loaded from the primary
      */
     public Long getCartItemCount(Long userId) {
-        return cartRepository.countByUserId(userId);
+        return cartTotals(userId).count();
+    }
+    
+    /**
+     * Get total cart value for user; a cache miss is loaded from the primary
+     */
+    public Money getTotalCartValue(Long userId) {
+        return cartTotals(userId).total();
+    }
+    
+    /**
+     * Hit/miss counts and approximate footprint of the per-user cart totals cache
+     */
+    public CacheRegionStats getCartTotalsCacheStats() {
+        CacheStats stats = cartTotals.stats();
+        long entries = cartTotals.estimatedSize();
+        return new CacheRegionStats("cart-totals", stats.hitCount(), stats.missCount(), stats.loadCount(),
+                stats.evictionCount(), entries, entries * CART_TOTALS_ENTRY_BYTES);
     }
     
     /**
-     * Get total cart value for user
+     * Forget the cached totals of every user, e.g. after prices changed
      */
-    public BigDecimal getTotalCartValue(Long userId) {
-        return cartRepository.getTotalCartValue(userId);
+    public void invalidateCartTotals() {
+        cartTotals.invalidateAll();
     }
     
     /**
-     * Check cart for insufficient stock
+     * Check cart for insufficient stock: items of medicines with more reserved than in stock
+     * (carts from before reservations, or stock lowered by an admin)
      */
+    @Transactional(readOnly = true)
     public List<Cart> checkCartStock(Long userId) {
-        return cartRepository.findItemsWithInsufficientStock(userId);
+        List<Cart> cartItems = cartRepository.findByUserIdWithMedicine(userId);
+        cartItems.removeIf(item -> stockReservationService.getAvailable(item.getMedicine().getId()) >= 0);
+        return cartItems;
     }
     
     /**
      * Get cart item by user and medicine
      */
+    @Transactional(readOnly = true)
     public Optional<Cart> getCartItem(Long userId, Long medicineId) {
         return cartRepository.findByUserIdAndMedicineId(userId, medicineId);
     }
@@ -143,6 +400,7 @@ public class CartService {
     /**
      * Check if cart item exists
      */
+    @Transactional(readOnly = true)
     public boolean cartItemExists(Long userId, Long medicineId) {
         return cartRepository.existsByUserIdAndMedicineId(userId, medicineId);
     }
@@ -150,7 +408,74 @@ public class CartService {
     /**
      * Get all cart items (for debugging)
      */
+    @Transactional(readOnly = true)
     public List<Cart> getAllCartItems() {
         return cartRepository.findAll();
     }
+    
+    /**
+     * Reserve stock for a cart change, giving it back if the transaction rolls back
+     */
+    private void reserve(Long medicineId, int quantity) {
+        if (!stockReservationService.tryReserve(medicineId, quantity)) {
+            throw new RuntimeException("Insufficient stock. Available: "
+                    + Math.max(0, stockReservationService.getAvailable(medicineId)));
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        stockReservationService.release(medicineId, quantity);
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+     * Keep the user's reads on the primary for a while once this change commits
+     */
+    private void recordWrite(Long userId) {
+        afterCommit(() -> readYourWritesTracker.recordWrite(userId));
+    }
+    
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+    
+    private CartTotals cartTotals(Long userId) {
+        return cartTotals.get(userId, this::loadCartTotals);
+    }
+    
+    private CartTotals loadCartTotals(Long userId) {
+        Object[] row = cartRepository.getCartTotals(userId).get(0);
+        Object total = row[1];
+        return new CartTotals(((Number) row[0]).longValue(),
+                total instanceof Money money ? money : Money.of(new BigDecimal(total.toString())));
+    }
+    
+    /**
+     * Apply a committed cart change to the cached totals; users not cached are loaded on their next read
+     */
+    private void adjustCartTotals(Long userId, long lineChange, Money valueChange) {
+        cartTotals.asMap().computeIfPresent(userId, (id, totals) ->
+                new CartTotals(totals.count() + lineChange, totals.total().plus(valueChange)));
+    }
+    
+    private static Money lineValue(Cart item) {
+        return item.getTotalPrice() != null ? item.getTotalPrice() : Money.ZERO;
+    }
+    
+    // Line count and total value of one user's cart
+    private record CartTotals(long count, Money total) {}
 }
@@ -0,0 +1,129 @@
+package com.medicine.site.service;
+
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.ClassUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Opaque, URL-safe encoding of a keyset scroll position: the sort key values of the
+ * boundary row (always including {@code id}) and the scroll direction.
+ */
+final class CatalogCursor {
+    
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    
+    private CatalogCursor() {}
+    
+    /**
+     * Encode a keyset position as a cursor string
+     */
+    static String encode(KeysetScrollPosition position) {
+        StringBuilder cursor = new StringBuilder(position.scrollsForward() ? "F" : "B");
+        for (Map.Entry<String, Object> key : position.getKeys().entrySet()) {
+            Object value = key.getValue();
+            cursor.append('|').append(key.getKey()).append(':').append(typeOf(value)).append(':')
+                    .append(value == null ? "" : ENCODER.encodeToString(value.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        return ENCODER.encodeToString(cursor.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decode a cursor string for the given sort; a missing cursor means the first page. A
+     * cursor that does not decode, or whose keys are not the sort's properties with values of
+     * their types, is rejected with {@link InvalidCatalogCursorException}.
+     */
+    static KeysetScrollPosition decode(String cursor, Sort sort) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            String[] parts = new String(DECODER.decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (int i = 1; i < parts.length; i++) {
+                String[] key = parts[i].split(":", 3);
+                // Type N marks a NULL key; an empty string stays an empty string
+                String raw = "N".equals(key[1]) ? null : new String(DECODER.decode(key[2]), StandardCharsets.UTF_8);
+                keys.put(key[0], parse(key[1], raw));
+            }
+            checkKeys(keys, sort);
+            return "B".equals(parts[0]) ? ScrollPosition.backward(keys) : ScrollPosition.forward(keys);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | DateTimeException | ClassCastException e) {
+            throw new InvalidCatalogCursorException(e);
+        }
+    }
+    
+    // The query binds each key against its sort property, so a foreign key or type must not get that far
+    private static void checkKeys(Map<String, Object> keys, Sort sort) {
+        Set<String> properties = sort.stream().map(Sort.Order::getProperty).collect(Collectors.toSet());
+        if (!keys.keySet().equals(properties)) {
+            throw new IllegalArgumentException("Cursor keys " + keys.keySet() + " do not match the sort " + properties);
+        }
+        for (Map.Entry<String, Object> key : keys.entrySet()) {
+            Class<?> type = BeanUtils.findPropertyType(key.getKey(), Medicine.class);
+            ClassUtils.resolvePrimitiveIfNecessary(type).cast(key.getValue());
+        }
+    }
+    
+    private static char typeOf(Object value) {
+        if (value == null) {
+            return 'N';
+        }
+        if (value instanceof Long) {
+            return 'L';
+        }
+        if (value instanceof Integer) {
+            return 'I';
+        }
+        if (value instanceof BigDecimal) {
+            return 'D';
+        }
+        if (value instanceof Money) {
+            return 'M';
+        }
+        if (value instanceof Boolean) {
+            return 'Z';
+        }
+        if (value instanceof LocalDateTime) {
+            return 'T';
+        }
+        return 'S';
+    }
+    
+    private static Object parse(String type, String raw) {
+        if (raw == null) {
+            return null;
+        }
+        switch (type) {
+            case "L":
+                return Long.valueOf(raw);
+            case "I":
+                return Integer.valueOf(raw);
+            case "D":
+                return new BigDecimal(raw);
+            case "M":
+                return Money.of(raw);
+            case "Z":
+                return Boolean.valueOf(raw);
+            case "T":
+                return LocalDateTime.parse(raw);
+            default:
+                return raw;
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package com.medicine.site.service;
 
 import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
 import com.medicine.site.repository.MedicineRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
 
@@ -16,7 +17,9 @@ public class DataInitializationService implements CommandLineRunner {
     @Autowired
     private MedicineRepository medicineRepository;
     
+    // One read-write transaction, so the existence check reads the primary rather than a replica
     @Override
+    @Transactional
     public void run(String... args) throws Exception {
         // Check if medicines already exist
         if (medicineRepository.count() > 0) {
@@ -28,119 +31,119 @@ public class DataInitializationService implements CommandLineRunner {
             // Pain Relief
             new Medicine("Paracetamol 500mg", "Acetaminophen", "Johnson & Johnson", "Pain Relief", 
                         "Effective pain reliever and fever reducer. Safe for adults and children.", 
-                        new BigDecimal("5.99"), 100),
+                        Money.of("5.99"), 100),
             
             new Medicine("Ibuprofen 400mg", "Ibuprofen", "Pfizer", "Pain Relief", 
                         "Anti-inflammatory pain reliever for headaches, muscle pain, and inflammation.", 
-                        new BigDecimal("8.99"), 75),
+                        Money.of("8.99"), 75),
             
             new Medicine("Aspirin 325mg", "Acetylsalicylic Acid", "Bayer", "Pain Relief", 
                         "Pain reliever and anti-inflammatory. Also used for heart health.", 
-                        new BigDecimal("6.99"), 50),
+                        Money.of("6.99"), 50),
             
             // Cold & Flu
             new Medicine("Cold & Flu Relief", "Pseudoephedrine + Acetaminophen", "Tylenol", "Cold & Flu", 
                         "Multi-symptom relief for cold and flu symptoms including congestion and fever.", 
-                        new BigDecimal("12.99"), 30),
+                        Money.of("12.99"), 30),
             
             new Medicine("Cough Syrup", "Dextromethorphan", "Robitussin", "Cold & Flu", 
                         "Effective cough suppressant for dry coughs. Alcohol-free formula.", 
-                        new BigDecimal("9.99"), 25),
+                        Money.of("9.99"), 25),
             
             new Medicine("Nasal Decongestant", "Oxymetazoline", "Afrin", "Cold & Flu", 
                         "Fast-acting nasal spray for congestion relief. 12-hour relief.", 
-                        new BigDecimal("7.99"), 40),
+                        Money.of("7.99"), 40),
             
             // Antibiotics (Prescription Required)
             new Medicine("Amoxicillin 500mg", "Amoxicillin", "GlaxoSmithKline", "Antibiotics", 
                         "Broad-spectrum antibiotic for bacterial infections. Prescription required.", 
-                        new BigDecimal("25.99"), 20),
+                        Money.of("25.99"), 20),
             
             new Medicine("Ciprofloxacin 500mg", "Ciprofloxacin", "Bayer", "Antibiotics", 
                         "Fluoroquinolone antibiotic for serious bacterial infections. Prescription required.", 
-                        new BigDecimal("35.99"), 15),
+                        Money.of("35.99"), 15),
             
             new Medicine("Azithromycin 250mg", "Azithromycin", "Pfizer", "Antibiotics", 
                         "Macrolide antibiotic for respiratory and skin infections. Prescription required.", 
-                        new BigDecimal("29.99"), 18),
+                        Money.of("29.99"), 18),
             
             // Digestive Health
             new Medicine("Omeprazole 20mg", "Omeprazole", "AstraZeneca", "Digestive Health", 
                         "Proton pump inhibitor for acid reflux and stomach ulcers. Prescription required.", 
-                        new BigDecimal("18.99"), 35),
+                        Money.of("18.99"), 35),
             
             new Medicine("Loperamide 2mg", "Loperamide", "Janssen", "Digestive Health", 
                         "Anti-diarrheal medication for acute and chronic diarrhea.", 
-                        new BigDecimal("6.99"), 60),
+                        Money.of("6.99"), 60),
             
             new Medicine("Simethicone 125mg", "Simethicone", "Johnson & Johnson", "Digestive Health", 
                         "Anti-gas medication for bloating and gas relief.", 
-                        new BigDecimal("4.99"), 80),
+                        Money.of("4.99"), 80),
             
             // Cardiovascular
             new Medicine("Atorvastatin 20mg", "Atorvastatin", "Pfizer", "Cardiovascular", 
                         "Statin medication for cholesterol management. Prescription required.", 
-                        new BigDecimal("22.99"), 25),
+                        Money.of("22.99"), 25),
             
             new Medicine("Lisinopril 10mg", "Lisinopril", "Merck", "Cardiovascular", 
                         "ACE inhibitor for blood pressure management. Prescription required.", 
-                        new BigDecimal("15.99"), 30),
+                        Money.of("15.99"), 30),
             
             new Medicine("Metoprolol 50mg", "Metoprolol", "AstraZeneca", "Cardiovascular", 
                         "Beta-blocker for heart conditions and blood pressure. Prescription required.", 
-                        new BigDecimal("19.99"), 22),
+                        Money.of("19.99"), 22),
             
             // Diabetes
             new Medicine("Metformin 500mg", "Metformin", "Bristol Myers Squibb", "Diabetes", 
                         "First-line treatment for type 2 diabetes. Prescription required.", 
-                        new BigDecimal("12.99"), 40),
+                        Money.of("12.99"), 40),
             
             new Medicine("Insulin Glargine", "Insulin Glargine", "Sanofi", "Diabetes", 
                         "Long-acting insulin for diabetes management. Prescription required.", 
-                        new BigDecimal("45.99"), 10),
+                        Money.of("45.99"), 10),
             
             new Medicine("Glucose Test Strips", "Glucose Oxidase", "Roche", "Diabetes", 
                         "Blood glucose test strips for diabetes monitoring.", 
-                        new BigDecimal("24.99"), 50),
+                        Money.of("24.99"), 50),
             
             // Vitamins & Supplements
             new Medicine("Vitamin D3 1000IU", "Cholecalciferol", "Nature Made", "Vitamins", 
                         "Essential vitamin D supplement for bone health and immune support.", 
-                        new BigDecimal("9.99"), 100),
+                        Money.of("9.99"), 100),
             
             new Medicine("Vitamin C 1000mg", "Ascorbic Acid", "Nature's Bounty", "Vitamins", 
                         "High-potency vitamin C for immune system support.", 
-                        new BigDecimal("7.99"), 120),
+                        Money.of("7.99"), 120),
             
             new Medicine("Multivitamin", "Multiple Vitamins", "Centrum", "Vitamins", 
                         "Complete daily multivitamin for overall health and wellness.", 
-                        new BigDecimal("11.99"), 90),
+                        Money.of("11.99"), 90),
             
             // Allergy
             new Medicine("Loratadine 10mg", "Loratadine", "Bayer", "Allergy", 
                         "Non-drowsy antihistamine for seasonal allergies.", 
-                        new BigDecimal("8.99"), 65),
+                        Money.of("8.99"), 65),
             
             new Medicine("Cetirizine 10mg", "Cetirizine", "Johnson & Johnson", "Allergy", 
                         "24-hour allergy relief for sneezing, runny nose, and itchy eyes.", 
-                        new BigDecimal("6.99"), 70),
+                        Money.of("6.99"), 70),
             
             new Medicine("Diphenhydramine 25mg", "Diphenhydramine", "Benadryl", "Allergy", 
                         "Antihistamine for allergy relief and sleep aid.", 
-                        new BigDecimal("5.99"), 85),
+                        Money.of("5.99"), 85),
             
             // Skin Care
             new Medicine("Hydrocortisone Cream 1%", "Hydrocortisone", "Johnson & Johnson", "Skin Care", 
                         "Topical corticosteroid for skin inflammation and itching.", 
-                        new BigDecimal("7.99"), 45),
+                        Money.of("7.99"), 45),
             
             new Medicine("Antifungal Cream", "Clotrimazole", "Bayer", "Skin Care", 
                         "Topical antifungal treatment for athlete's foot and ringworm.", 
-                        new BigDecimal("9.99"), 35),
+                        Money.of("9.99"), 35),
             
             new Medicine("Sunscreen SPF 50", "Zinc Oxide + Titanium Dioxide", "Neutrogena", "Skin Care", 
                         "Broad-spectrum sunscreen for UV protection.", 
-                        new BigDecimal("12.99"), 25)
+                        Money.of("12.99"), 25)
         );
         
         // Set additional properties for each medicine
@@ -0,0 +1,11 @@
+package com.medicine.site.service;
+
+/**
+ * A catalog cursor that was not produced for the requested sort; the caller should answer 400
+ */
+public class InvalidCatalogCursorException extends RuntimeException {
+    
+    public InvalidCatalogCursorException(Throwable cause) {
+        super("Invalid catalog cursor", cause);
+    }
+}
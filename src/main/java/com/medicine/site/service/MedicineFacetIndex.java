@@ -0,0 +1,345 @@
+package com.medicine.site.service;
+
+import com.medicine.site.dto.CatalogFacets;
+import com.medicine.site.dto.CatalogFacets.FacetCount;
+import com.medicine.site.dto.CatalogFilter;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bitset facet engine over the active catalog.
+ *
+ * Every active medicine owns a dense slot, and every facet value (category,
+ * manufacturer, prescription flag, in-stock flag, price bucket) owns a bitset of
+ * the slots carrying it. Any filter combination is an AND of those bitsets, and the
+ * count shown next to a facet value is the cardinality of that value's bitset ANDed
+ * with every other selected filter.
+ */
+@Component
+public class MedicineFacetIndex {
+
+    // Lower bound of each price bucket, in cents; a bucket runs up to the next one's floor, exclusive
+    private static final long[] PRICE_BUCKET_FLOORS = {0L, 1_000L, 2_500L, 5_000L, 10_000L};
+
+    // Link values as inclusive min and max prices, the max one cent below the next floor
+    private static final String[] PRICE_BUCKET_VALUES = {"0-9.99", "10-24.99", "25-49.99", "50-99.99", "100-"};
+
+    private static final String[] PRICE_BUCKET_LABELS = {"Under $10", "$10 - $25", "$25 - $50", "$50 - $100", "$100 & above"};
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> slotsByMedicineId = new HashMap<>();
+
+    private final List<FacetedMedicine> documents = new ArrayList<>();
+
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    private final BitSet live = new BitSet();
+
+    private final Map<String, BitSet> categories = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    private final Map<String, BitSet> manufacturers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    private final BitSet prescription = new BitSet();
+
+    private final BitSet inStock = new BitSet();
+
+    private final BitSet[] priceBuckets = new BitSet[PRICE_BUCKET_FLOORS.length];
+
+    private long[] priceCents = new long[64];
+
+    private volatile boolean ready = false;
+
+    public MedicineFacetIndex() {
+        for (int i = 0; i < priceBuckets.length; i++) {
+            priceBuckets[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Rebuild all bitsets from the given active medicines
+     */
+    public void rebuild(Collection<Medicine> medicines) {
+        lock.writeLock().lock();
+        try {
+            slotsByMedicineId.clear();
+            documents.clear();
+            freeSlots.clear();
+            live.clear();
+            categories.clear();
+            manufacturers.clear();
+            prescription.clear();
+            inStock.clear();
+            for (BitSet bucket : priceBuckets) {
+                bucket.clear();
+            }
+            for (Medicine medicine : medicines) {
+                if (isFaceted(medicine)) {
+                    addDocument(FacetedMedicine.of(medicine));
+                }
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add or refresh a medicine; inactive medicines are removed
+     */
+    public void index(Medicine medicine) {
+        if (medicine == null || medicine.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeDocument(medicine.getId());
+            if (isFaceted(medicine)) {
+                addDocument(FacetedMedicine.of(medicine));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a medicine from every facet
+     */
+    public void remove(Long medicineId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(medicineId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Whether the bitsets have been built
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Count the medicines matching the filter, and for every facet value the number of
+     * medicines it would match combined with the other selected filters. The search term
+     * is matched by the search index: pass the IDs it found, or null without a search.
+     */
+    public CatalogFacets facets(CatalogFilter filter, Collection<Long> searchMatches) {
+        lock.readLock().lock();
+        try {
+            BitSet searchFilter = searchMatches != null ? idBits(searchMatches) : null;
+            BitSet categoryFilter = filter.hasCategory() ? valueBits(categories, filter.getCategory().trim()) : null;
+            BitSet manufacturerFilter = filter.hasManufacturer() ? valueBits(manufacturers, filter.getManufacturer().trim()) : null;
+            BitSet prescriptionFilter = prescriptionBits(filter.getRequiresPrescription());
+            BitSet stockFilter = filter.isInStockOnly() ? inStock : null;
+            BitSet priceFilter = filter.hasPriceRange() ? priceRangeBits(filter.getMinPrice(), filter.getMaxPrice()) : null;
+
+            CatalogFacets facets = new CatalogFacets();
+            facets.setTotal(and(searchFilter, categoryFilter, manufacturerFilter, prescriptionFilter, stockFilter, priceFilter).cardinality());
+
+            BitSet base = and(searchFilter, manufacturerFilter, prescriptionFilter, stockFilter, priceFilter);
+            facets.setCategories(counts(categories, base, filter.hasCategory() ? filter.getCategory().trim() : null));
+
+            base = and(searchFilter, categoryFilter, prescriptionFilter, stockFilter, priceFilter);
+            facets.setManufacturers(counts(manufacturers, base, filter.hasManufacturer() ? filter.getManufacturer().trim() : null));
+
+            base = and(searchFilter, categoryFilter, manufacturerFilter, stockFilter, priceFilter);
+            List<FacetCount> prescriptionCounts = new ArrayList<>(2);
+            prescriptionCounts.add(new FacetCount("prescription", "Prescription Required",
+                    countWith(base, prescription), Boolean.TRUE.equals(filter.getRequiresPrescription())));
+            prescriptionCounts.add(new FacetCount("non-prescription", "No Prescription",
+                    countWith(base, prescriptionBits(false)), Boolean.FALSE.equals(filter.getRequiresPrescription())));
+            facets.setPrescription(prescriptionCounts);
+
+            base = and(searchFilter, categoryFilter, manufacturerFilter, prescriptionFilter, priceFilter);
+            List<FacetCount> stockCounts = new ArrayList<>(1);
+            stockCounts.add(new FacetCount("in-stock", "In Stock", countWith(base, inStock), filter.isInStockOnly()));
+            facets.setStock(stockCounts);
+
+            base = and(searchFilter, categoryFilter, manufacturerFilter, prescriptionFilter, stockFilter);
+            List<FacetCount> priceCounts = new ArrayList<>(priceBuckets.length);
+            for (int i = 0; i < priceBuckets.length; i++) {
+                priceCounts.add(new FacetCount(PRICE_BUCKET_VALUES[i], PRICE_BUCKET_LABELS[i],
+                        countWith(base, priceBuckets[i]), isBucketSelected(i, filter)));
+            }
+            facets.setPriceRanges(priceCounts);
+
+            return facets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<FacetCount> counts(Map<String, BitSet> values, BitSet base, String selected) {
+        List<FacetCount> counts = new ArrayList<>(values.size());
+        for (Map.Entry<String, BitSet> value : values.entrySet()) {
+            counts.add(new FacetCount(value.getKey(), value.getKey(), countWith(base, value.getValue()),
+                    value.getKey().equalsIgnoreCase(selected)));
+        }
+        return counts;
+    }
+
+    private static long countWith(BitSet base, BitSet value) {
+        BitSet matches = (BitSet) base.clone();
+        matches.and(value);
+        return matches.cardinality();
+    }
+
+    private BitSet and(BitSet... filters) {
+        BitSet result = (BitSet) live.clone();
+        for (BitSet filter : filters) {
+            if (filter != null) {
+                result.and(filter);
+            }
+        }
+        return result;
+    }
+
+    private BitSet idBits(Collection<Long> medicineIds) {
+        BitSet bits = new BitSet();
+        for (Long medicineId : medicineIds) {
+            Integer slot = slotsByMedicineId.get(medicineId);
+            if (slot != null) {
+                bits.set(slot);
+            }
+        }
+        return bits;
+    }
+
+    private static BitSet valueBits(Map<String, BitSet> values, String value) {
+        BitSet bits = values.get(value);
+        return bits != null ? bits : new BitSet();
+    }
+
+    private BitSet prescriptionBits(Boolean requiresPrescription) {
+        if (requiresPrescription == null) {
+            return null;
+        }
+        if (requiresPrescription) {
+            return prescription;
+        }
+        BitSet overTheCounter = (BitSet) live.clone();
+        overTheCounter.andNot(prescription);
+        return overTheCounter;
+    }
+
+    private BitSet priceRangeBits(BigDecimal minPrice, BigDecimal maxPrice) {
+        long min = minPrice != null ? toCents(minPrice) : Long.MIN_VALUE;
+        long max = maxPrice != null ? toCents(maxPrice) : Long.MAX_VALUE;
+        BitSet bits = new BitSet();
+        for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+            if (priceCents[slot] >= min && priceCents[slot] <= max) {
+                bits.set(slot);
+            }
+        }
+        return bits;
+    }
+
+    private static boolean isBucketSelected(int bucket, CatalogFilter filter) {
+        if (!filter.hasPriceRange()) {
+            return false;
+        }
+        long floor = PRICE_BUCKET_FLOORS[bucket];
+        long min = filter.getMinPrice() != null ? toCents(filter.getMinPrice()) : 0L;
+        if (min != floor) {
+            return false;
+        }
+        if (bucket + 1 == PRICE_BUCKET_FLOORS.length) {
+            return filter.getMaxPrice() == null;
+        }
+        return filter.getMaxPrice() != null && toCents(filter.getMaxPrice()) == PRICE_BUCKET_FLOORS[bucket + 1] - 1;
+    }
+
+    private void addDocument(FacetedMedicine document) {
+        int slot = freeSlots.isEmpty() ? documents.size() : freeSlots.pop();
+        if (slot == documents.size()) {
+            documents.add(document);
+        } else {
+            documents.set(slot, document);
+        }
+        slotsByMedicineId.put(document.id(), slot);
+
+        live.set(slot);
+        categories.computeIfAbsent(document.category(), key -> new BitSet()).set(slot);
+        manufacturers.computeIfAbsent(document.manufacturer(), key -> new BitSet()).set(slot);
+        prescription.set(slot, document.requiresPrescription());
+        inStock.set(slot, document.inStock());
+        priceBuckets[document.priceBucket()].set(slot);
+        if (slot >= priceCents.length) {
+            priceCents = Arrays.copyOf(priceCents, Math.max(slot + 1, priceCents.length * 2));
+        }
+        priceCents[slot] = document.priceCents();
+    }
+
+    private void removeDocument(Long medicineId) {
+        Integer slot = slotsByMedicineId.remove(medicineId);
+        if (slot == null) {
+            return;
+        }
+        FacetedMedicine document = documents.set(slot, null);
+        live.clear(slot);
+        clearValue(categories, document.category(), slot);
+        clearValue(manufacturers, document.manufacturer(), slot);
+        prescription.clear(slot);
+        inStock.clear(slot);
+        priceBuckets[document.priceBucket()].clear(slot);
+        freeSlots.push(slot);
+    }
+
+    private static void clearValue(Map<String, BitSet> values, String value, int slot) {
+        BitSet bits = values.get(value);
+        if (bits != null) {
+            bits.clear(slot);
+            if (bits.isEmpty()) {
+                values.remove(value);
+            }
+        }
+    }
+
+    private static boolean isFaceted(Medicine medicine) {
+        return medicine.getId() != null && Boolean.TRUE.equals(medicine.getIsActive());
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return Money.of(amount).getCents();
+    }
+
+    private static int priceBucketOf(long cents) {
+        int bucket = 0;
+        while (bucket + 1 < PRICE_BUCKET_FLOORS.length && cents >= PRICE_BUCKET_FLOORS[bucket + 1]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    // Snapshot of the facet values of one medicine
+    private record FacetedMedicine(Long id, String category, String manufacturer, boolean requiresPrescription,
+                                   boolean inStock, long priceCents, int priceBucket) {
+
+        static FacetedMedicine of(Medicine medicine) {
+            long cents = medicine.getPrice() != null ? medicine.getPrice().getCents() : 0L;
+            return new FacetedMedicine(medicine.getId(),
+                    medicine.getCategory() != null ? medicine.getCategory() : "",
+                    medicine.getManufacturer() != null ? medicine.getManufacturer() : "",
+                    Boolean.TRUE.equals(medicine.getRequiresPrescription()),
+                    medicine.getStockQuantity() != null && medicine.getStockQuantity() > 0,
+                    cents, priceBucketOf(cents));
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.medicine.site.service;
+
+import com.medicine.site.entity.Medicine;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram inverted index over the searchable text of active medicines
+ * (name, generic name and manufacturer).
+ *
+ * Every indexed medicine gets a dense slot number; each trigram maps to a sorted
+ * posting list of slots. A search intersects the posting lists of the query's
+ * trigrams, verifies the candidates with a substring check and returns the page
+ * of medicine IDs, so the database is only needed to hydrate that page.
+ */
+@Component
+public class MedicineSearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    // Separates the indexed fields so a match can never span two of them
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    // Text order of the database's case-insensitive collation, which also sorts NULL first
+    private static final Comparator<String> TEXT_ORDER = Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER);
+
+    private static final Map<String, Comparator<IndexedMedicine>> SORT_KEYS = Map.of(
+            "id", Comparator.comparing(IndexedMedicine::id),
+            "name", Comparator.comparing(IndexedMedicine::name, TEXT_ORDER),
+            "genericName", Comparator.comparing(IndexedMedicine::genericName, TEXT_ORDER),
+            "manufacturer", Comparator.comparing(IndexedMedicine::manufacturer, TEXT_ORDER),
+            "category", Comparator.comparing(IndexedMedicine::category, TEXT_ORDER),
+            "price", Comparator.comparingLong(IndexedMedicine::priceCents),
+            "stockQuantity", Comparator.comparing(IndexedMedicine::stockQuantity, Comparator.nullsFirst(Comparator.naturalOrder()))
+    );
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> slotsByMedicineId = new HashMap<>();
+
+    private final List<IndexedMedicine> documents = new ArrayList<>();
+
+    // Slots of removed medicines, handed out again before the document list grows
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    private final Map<Long, PostingList> postings = new HashMap<>();
+
+    private volatile boolean ready = false;
+
+    /**
+     * Rebuild the whole index from the given active medicines
+     */
+    public void rebuild(Collection<Medicine> medicines) {
+        lock.writeLock().lock();
+        try {
+            slotsByMedicineId.clear();
+            documents.clear();
+            freeSlots.clear();
+            postings.clear();
+            for (Medicine medicine : medicines) {
+                if (isSearchable(medicine)) {
+                    addDocument(IndexedMedicine.of(medicine));
+                }
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add or refresh a medicine; inactive medicines are removed from the index
+     */
+    public void index(Medicine medicine) {
+        if (medicine == null || medicine.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeDocument(medicine.getId());
+            if (isSearchable(medicine)) {
+                addDocument(IndexedMedicine.of(medicine));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a medicine from the index
+     */
+    public void remove(Long medicineId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(medicineId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Whether the index has been built and can answer searches
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Whether the index can order results by the given sort
+     */
+    public boolean supports(Sort sort) {
+        for (Sort.Order order : sort) {
+            if (!SORT_KEYS.containsKey(order.getProperty())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Number of medicines currently indexed
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsByMedicineId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of slots allocated, live or free; flat as long as medicines are only updated
+     */
+    int slotCount() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the IDs of all medicines matching the search term, in index order
+     */
+    public List<Long> search(String searchTerm) {
+        lock.readLock().lock();
+        try {
+            List<IndexedMedicine> matches = findMatches(normalize(searchTerm));
+            List<Long> ids = new ArrayList<>(matches.size());
+            for (IndexedMedicine match : matches) {
+                ids.add(match.id());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find one page of matching medicine IDs, ordered by the pageable's sort
+     */
+    public SearchPage search(String searchTerm, Pageable pageable) {
+        Comparator<IndexedMedicine> comparator = comparatorFor(pageable.getSort());
+        lock.readLock().lock();
+        try {
+            List<IndexedMedicine> matches = findMatches(normalize(searchTerm));
+            matches.sort(comparator);
+
+            int total = matches.size();
+            int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), total) : 0;
+            int to = pageable.isPaged() ? Math.min(from + pageable.getPageSize(), total) : total;
+
+            List<Long> ids = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                ids.add(matches.get(i).id());
+            }
+            return new SearchPage(ids, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<IndexedMedicine> findMatches(String term) {
+        List<IndexedMedicine> matches = new ArrayList<>();
+        if (term.isEmpty()) {
+            return matches;
+        }
+
+        // Terms shorter than a trigram cannot use the postings; scan the in-memory documents
+        if (term.length() < GRAM_LENGTH) {
+            for (IndexedMedicine document : documents) {
+                if (document != null && document.text().contains(term)) {
+                    matches.add(document);
+                }
+            }
+            return matches;
+        }
+
+        Set<Long> grams = trigrams(term);
+        PostingList[] lists = new PostingList[grams.size()];
+        int i = 0;
+        for (Long gram : grams) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                return matches;
+            }
+            lists[i++] = list;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(PostingList::size));
+
+        int[] candidates = Arrays.copyOf(lists[0].slots, lists[0].size);
+        int count = candidates.length;
+        for (int l = 1; l < lists.length && count > 0; l++) {
+            count = intersect(candidates, count, lists[l]);
+        }
+
+        // Trigrams may match out of order, so confirm each candidate
+        for (int c = 0; c < count; c++) {
+            IndexedMedicine document = documents.get(candidates[c]);
+            if (document.text().contains(term)) {
+                matches.add(document);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Intersect the first {@code count} candidates in place with a posting list,
+     * galloping through the (usually longer) posting list
+     */
+    private static int intersect(int[] candidates, int count, PostingList list) {
+        int kept = 0;
+        int low = 0;
+        for (int c = 0; c < count && low < list.size; c++) {
+            int position = Arrays.binarySearch(list.slots, low, list.size, candidates[c]);
+            if (position >= 0) {
+                candidates[kept++] = candidates[c];
+                low = position + 1;
+            } else {
+                low = -position - 1;
+            }
+        }
+        return kept;
+    }
+
+    private void addDocument(IndexedMedicine document) {
+        int slot = freeSlots.isEmpty() ? documents.size() : freeSlots.pop();
+        if (slot == documents.size()) {
+            documents.add(document);
+        } else {
+            documents.set(slot, document);
+        }
+        slotsByMedicineId.put(document.id(), slot);
+        for (Long gram : trigrams(document.text())) {
+            postings.computeIfAbsent(gram, key -> new PostingList()).add(slot);
+        }
+    }
+
+    private void removeDocument(Long medicineId) {
+        Integer slot = slotsByMedicineId.remove(medicineId);
+        if (slot == null) {
+            return;
+        }
+        IndexedMedicine document = documents.set(slot, null);
+        for (Long gram : trigrams(document.text())) {
+            PostingList list = postings.get(gram);
+            if (list != null && list.remove(slot) && list.size == 0) {
+                postings.remove(gram);
+            }
+        }
+        freeSlots.push(slot);
+    }
+
+    private static boolean isSearchable(Medicine medicine) {
+        return medicine.getId() != null && Boolean.TRUE.equals(medicine.getIsActive());
+    }
+
+    private static Set<Long> trigrams(String text) {
+        Set<Long> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Comparator<IndexedMedicine> comparatorFor(Sort sort) {
+        Comparator<IndexedMedicine> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<IndexedMedicine> key = SORT_KEYS.get(order.getProperty());
+            if (key == null) {
+                throw new IllegalArgumentException("Unsupported sort property: " + order.getProperty());
+            }
+            if (order.isDescending()) {
+                key = key.reversed();
+            }
+            comparator = comparator == null ? key : comparator.thenComparing(key);
+        }
+        Comparator<IndexedMedicine> byId = Comparator.comparing(IndexedMedicine::id);
+        return comparator == null ? byId : comparator.thenComparing(byId);
+    }
+
+    /**
+     * One page of search results: the medicine IDs on the page and the total match count
+     */
+    public record SearchPage(List<Long> ids, long total) {}
+
+    // Snapshot of the fields needed for matching and sorting
+    private record IndexedMedicine(Long id, String text, String name, String genericName, String manufacturer,
+                                   String category, long priceCents, Integer stockQuantity) {
+
+        static IndexedMedicine of(Medicine medicine) {
+            String text = normalize(medicine.getName()) + FIELD_SEPARATOR
+                    + normalize(medicine.getGenericName()) + FIELD_SEPARATOR
+                    + normalize(medicine.getManufacturer());
+            return new IndexedMedicine(medicine.getId(), text, medicine.getName(), medicine.getGenericName(),
+                    medicine.getManufacturer(), medicine.getCategory(),
+                    medicine.getPrice() != null ? medicine.getPrice().getCents() : 0L, medicine.getStockQuantity());
+        }
+    }
+
+    // Growable sorted array of slots
+    private static final class PostingList {
+        private int[] slots = new int[4];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void add(int slot) {
+            if (size > 0 && slots[size - 1] < slot) {
+                append(slot);
+                return;
+            }
+            int position = Arrays.binarySearch(slots, 0, size, slot);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            ensureCapacity();
+            System.arraycopy(slots, position, slots, position + 1, size - position);
+            slots[position] = slot;
+            size++;
+        }
+
+        boolean remove(int slot) {
+            int position = Arrays.binarySearch(slots, 0, size, slot);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        private void append(int slot) {
+            ensureCapacity();
+            slots[size++] = slot;
+        }
+
+        private void ensureCapacity() {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+        }
+    }
+}
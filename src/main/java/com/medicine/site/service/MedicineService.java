@@ -1,27 +1,102 @@
 package com.medicine.site.service;
 
+import com.medicine.site.dto.CatalogFacets;
+import com.medicine.site.dto.CatalogFilter;
+import com.medicine.site.dto.CatalogWindow;
+import com.medicine.site.dto.MedicineSuggestionDto;
+import com.medicine.site.dto.MedicineSummary;
 import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import com.medicine.site.repository.CartRepository;
 import com.medicine.site.repository.MedicineRepository;
+import com.medicine.site.repository.MedicineSpecifications;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 @Transactional
 public class MedicineService {
     
+    // Search hits are passed to SQL as an ID list up to this size (SQL Server allows 2100 parameters)
+    private static final int MAX_SEARCH_IDS_IN_QUERY = 1000;
+    
     @Autowired
     private MedicineRepository medicineRepository;
     
+    @Autowired
+    private CartRepository cartRepository;
+    
+    @Autowired
+    private MedicineSearchIndex searchIndex;
+    
+    @Autowired
+    private MedicineSuggestionIndex suggestionIndex;
+    
+    @Autowired
+    private MedicineFacetIndex facetIndex;
+    
+    @Autowired
+    private StockReservationService stockReservationService;
+    
+    // Lazy: the cart service itself depends on this service
+    @Lazy
+    @Autowired
+    private CartService cartService;
+    
+    /**
+     * Build the in-memory search, suggestion and facet indexes once the application (and its sample data) is ready;
+     * read in a read-write transaction, which always goes to the primary, so the indexes start from the latest data
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void buildSearchIndex() {
+        List<Medicine> medicines = medicineRepository.findByIsActiveTrue();
+        searchIndex.rebuild(medicines);
+        suggestionIndex.rebuild(medicines);
+        facetIndex.rebuild(medicines);
+        for (Object[] row : cartRepository.countCartLinesByMedicine()) {
+            suggestionIndex.seedPopularity((Long) row[0], (Long) row[1]);
+        }
+    }
+    
+    /**
+     * Re-index the medicines whose stock a reservation flush just wrote, so the in-stock facet,
+     * stock ordering and suggestions follow reservations; read-write like the build, so the rows
+     * come from the primary and not from a replica that may not have the flush yet
+     */
+    @EventListener
+    @Transactional
+    public void onStockFlushed(StockReservationService.StockFlushed event) {
+        for (Medicine medicine : medicineRepository.findAllById(event.medicineIds())) {
+            refreshIndexes(medicine);
+        }
+    }
+    
     /**
      * Get all active medicines
      */
+    @Transactional(readOnly = true)
     public List<Medicine> getAllMedicines() {
         return medicineRepository.findByIsActiveTrue();
     }
@@ -29,6 +104,7 @@ public class MedicineService {
     /**
      * Get all active medicines with pagination
      */
+    @Transactional(readOnly = true)
     public Page<Medicine> getAllMedicines(Pageable pageable) {
         return medicineRepository.findByIsActiveTrue(pageable);
     }
@@ -36,6 +112,7 @@ public class MedicineService {
     /**
      * Get medicine by ID
      */
+    @Transactional(readOnly = true)
     public Optional<Medicine> getMedicineById(Long id) {
         return medicineRepository.findById(id);
     }
@@ -43,26 +120,145 @@ public class MedicineService {
     /**
      * Search medicines by search term
      */
+    @Transactional(readOnly = true)
     public List<Medicine> searchMedicines(String searchTerm) {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             return getAllMedicines();
         }
+        if (searchIndex.isReady()) {
+            return loadInOrder(searchIndex.search(searchTerm));
+        }
         return medicineRepository.searchMedicines(searchTerm.trim());
     }
     
     /**
      * Search medicines with pagination
      */
+    @Transactional(readOnly = true)
     public Page<Medicine> searchMedicines(String searchTerm, Pageable pageable) {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             return getAllMedicines(pageable);
         }
+        if (searchIndex.isReady() && searchIndex.supports(pageable.getSort())) {
+            MedicineSearchIndex.SearchPage page = searchIndex.search(searchTerm, pageable);
+            return new PageImpl<>(loadInOrder(page.ids()), pageable, page.total());
+        }
         return medicineRepository.searchMedicines(searchTerm.trim(), pageable);
     }
     
+    /**
+     * Suggest medicine names and generic names starting with the given prefix
+     */
+    public List<MedicineSuggestionDto> suggestMedicines(String prefix, int limit) {
+        return suggestionIndex.suggest(prefix, limit);
+    }
+    
+    /**
+     * Record that a medicine got a new cart line, for suggestion ranking; counted in lines like
+     * the popularity seeded at startup, whatever the quantity
+     */
+    public void recordCartAddition(Long medicineId) {
+        suggestionIndex.recordPopularity(medicineId);
+    }
+    
+    /**
+     * Get one catalog page of medicine summaries matching every filter
+     * in a single query (plus one count query when needed)
+     */
+    @Transactional(readOnly = true)
+    public Page<MedicineSummary> findCatalog(CatalogFilter filter, Pageable pageable) {
+        if (filter.hasSearch() && !filter.hasAttributeFilters()
+                && searchIndex.isReady() && searchIndex.supports(pageable.getSort())) {
+            MedicineSearchIndex.SearchPage page = searchIndex.search(filter.getSearch(), pageable);
+            return new PageImpl<>(loadSummariesInOrder(page.ids()), pageable, page.total());
+        }
+        Specification<Medicine> specification = catalogSpecification(filter);
+        if (specification == null) {
+            return Page.empty(pageable);
+        }
+        return medicineRepository.findSummaries(specification, pageable);
+    }
+    
+    /**
+     * Get one catalog window of medicine summaries using keyset (seek) pagination.
+     * The cursor comes from a previous window with the same sort, anything else is an
+     * {@link InvalidCatalogCursorException}; the total is only counted when asked for.
+     */
+    @Transactional(readOnly = true)
+    public CatalogWindow<MedicineSummary> scrollCatalog(CatalogFilter filter, String cursor, int size, Sort sort,
+                                                        boolean includeCount) {
+        Sort keysetSort = sort.getOrderFor("id") != null ? sort : sort.and(Sort.by("id"));
+        KeysetScrollPosition position = CatalogCursor.decode(cursor, keysetSort);
+        
+        Specification<Medicine> specification = catalogSpecification(filter);
+        if (specification == null) {
+            return new CatalogWindow<>(new ArrayList<>(), null, null, includeCount ? 0L : null);
+        }
+        Window<MedicineSummary> window = medicineRepository.scrollSummaries(specification, position, size, keysetSort);
+        Long total = includeCount ? medicineRepository.count(specification) : null;
+        
+        List<MedicineSummary> content = window.getContent();
+        if (content.isEmpty()) {
+            return new CatalogWindow<>(content, null, null, total);
+        }
+        
+        // For a backward window, hasNext() means there are more rows before it
+        boolean forward = position.scrollsForward();
+        boolean moreAfter = forward ? window.hasNext() : true;
+        boolean moreBefore = forward ? !position.isInitial() : window.hasNext();
+        
+        String next = moreAfter ? CatalogCursor.encode(
+                ScrollPosition.forward(keysetAt(window, content.size() - 1).getKeys())) : null;
+        String previous = moreBefore ? CatalogCursor.encode(
+                ScrollPosition.backward(keysetAt(window, 0).getKeys())) : null;
+        return new CatalogWindow<>(content, next, previous, total);
+    }
+    
+    private static KeysetScrollPosition keysetAt(Window<?> window, int index) {
+        return (KeysetScrollPosition) window.positionAt(index);
+    }
+    
+    /**
+     * Build the catalog criteria for a filter, or null when the search term matches nothing
+     */
+    private Specification<Medicine> catalogSpecification(CatalogFilter filter) {
+        Specification<Medicine> specification = MedicineSpecifications.isActive();
+        
+        if (filter.hasSearch()) {
+            if (searchIndex.isReady()) {
+                List<Long> ids = searchIndex.search(filter.getSearch());
+                if (ids.isEmpty()) {
+                    return null;
+                }
+                specification = specification.and(ids.size() <= MAX_SEARCH_IDS_IN_QUERY
+                        ? MedicineSpecifications.idIn(ids)
+                        : MedicineSpecifications.matchesSearch(filter.getSearch()));
+            } else {
+                specification = specification.and(MedicineSpecifications.matchesSearch(filter.getSearch()));
+            }
+        }
+        if (filter.hasCategory()) {
+            specification = specification.and(MedicineSpecifications.inCategory(filter.getCategory().trim()));
+        }
+        if (filter.hasManufacturer()) {
+            specification = specification.and(MedicineSpecifications.fromManufacturer(filter.getManufacturer().trim()));
+        }
+        if (filter.hasPriceRange()) {
+            specification = specification.and(MedicineSpecifications.priceBetween(filter.getMinPrice(), filter.getMaxPrice()));
+        }
+        if (filter.getRequiresPrescription() != null) {
+            specification = specification.and(MedicineSpecifications.requiresPrescription(filter.getRequiresPrescription()));
+        }
+        if (filter.isInStockOnly()) {
+            specification = specification.and(MedicineSpecifications.inStock());
+        }
+        return specification;
+    }
+    
     /**
      * Get medicines by category
      */
+    @Transactional(readOnly = true)
     public List<Medicine> getMedicinesByCategory(String category) {
         return medicineRepository.findByCategoryAndIsActiveTrue(category);
     }
@@ -70,6 +266,7 @@ public class MedicineService {
     /**
      * Get medicines by category with pagination
      */
+    @Transactional(readOnly = true)
     public Page<Medicine> getMedicinesByCategory(String category, Pageable pageable) {
         return medicineRepository.findByCategoryAndIsActiveTrue(category, pageable);
     }
@@ -77,20 +274,23 @@ public class MedicineService {
     /**
      * Get medicines by price range
      */
+    @Transactional(readOnly = true)
     public List<Medicine> getMedicinesByPriceRange(BigDecimal minPrice, BigDecimal maxPrice) {
-        return medicineRepository.findByPriceRange(minPrice, maxPrice);
+        return medicineRepository.findByPriceRange(Money.of(minPrice), Money.of(maxPrice));
     }
     
     /**
      * Get medicines by price range with pagination
      */
+    @Transactional(readOnly = true)
     public Page<Medicine> getMedicinesByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
-        return medicineRepository.findByPriceRange(minPrice, maxPrice, pageable);
+        return medicineRepository.findByPriceRange(Money.of(minPrice), Money.of(maxPrice), pageable);
     }
     
     /**
      * Get medicines that require prescription
      */
+    @Transactional(readOnly = true)
     public List<Medicine> getPrescriptionMedicines() {
         return medicineRepository.findByRequiresPrescriptionTrueAndIsActiveTrue();
     }
@@ -98,6 +298,7 @@ public class MedicineService {
     /**
      * Get medicines that don't require prescription
      */
+    @Transactional(readOnly = true)
     public List<Medicine> getNonPrescriptionMedicines() {
         return medicineRepository.findByRequiresPrescriptionFalseAndIsActiveTrue();
     }
@@ -105,6 +306,7 @@ public class MedicineService {
     /**
      * Get medicines in stock
      */
+    @Transactional(readOnly = true)
     public List<Medicine> getMedicinesInStock() {
         return medicineRepository.findInStock();
     }
@@ -112,13 +314,29 @@ public class MedicineService {
     /**
      * Get medicines in stock with pagination
      */
+    @Transactional(readOnly = true)
     public Page<Medicine> getMedicinesInStock(Pageable pageable) {
         return medicineRepository.findInStock(pageable);
     }
     
+    /**
+     * Get facet values with live match counts for the given filter, search term included
+     */
+    @Transactional(readOnly = true)
+    public CatalogFacets getCatalogFacets(CatalogFilter filter) {
+        if (!facetIndex.isReady()) {
+            facetIndex.rebuild(medicineRepository.findByIsActiveTrue());
+        }
+        if (filter.hasSearch() && !searchIndex.isReady()) {
+            searchIndex.rebuild(medicineRepository.findByIsActiveTrue());
+        }
+        return facetIndex.facets(filter, filter.hasSearch() ? searchIndex.search(filter.getSearch()) : null);
+    }
+    
     /**
      * Get all unique categories
      */
+    @Transactional(readOnly = true)
     public List<String> getAllCategories() {
         return medicineRepository.findDistinctCategories();
     }
@@ -126,6 +344,7 @@ public class MedicineService {
     /**
      * Get all unique manufacturers
      */
+    @Transactional(readOnly = true)
     public List<String> getAllManufacturers() {
         return medicineRepository.findDistinctManufacturers();
     }
@@ -133,6 +352,7 @@ public class MedicineService {
     /**
      * Get medicines by multiple categories
      */
+    @Transactional(readOnly = true)
     public List<Medicine> getMedicinesByCategories(List<String> categories) {
         return medicineRepository.findByCategories(categories);
     }
@@ -140,6 +360,7 @@ public class MedicineService {
     /**
      * Get medicines by multiple categories with pagination
      */
+    @Transactional(readOnly = true)
     public Page<Medicine> getMedicinesByCategories(List<String> categories, Pageable pageable) {
         return medicineRepository.findByCategories(categories, pageable);
     }
@@ -148,14 +369,56 @@ public class MedicineService {
      * Save medicine
      */
     public Medicine saveMedicine(Medicine medicine) {
-        return medicineRepository.save(medicine);
+        Medicine saved = medicineRepository.save(medicine);
+        afterCommit(() -> refreshIndexes(saved));
+        return saved;
     }
     
     /**
      * Update medicine
      */
     public Medicine updateMedicine(Medicine medicine) {
-        return medicineRepository.save(medicine);
+        Medicine saved = medicineRepository.save(medicine);
+        boolean repriced = saved.getId() != null && cartRepository.repriceLines(List.of(saved.getId())) > 0;
+        afterCommit(() -> {
+            refreshIndexes(saved);
+            if (repriced) {
+                cartService.invalidateCartTotals();
+            }
+        });
+        return saved;
+    }
+    
+    /**
+     * Change the price of one medicine and of every open cart line holding it
+     */
+    public boolean updatePrice(Long medicineId, Money price) {
+        return updatePrices(Map.of(medicineId, price)) > 0;
+    }
+    
+    /**
+     * Apply a price list (medicine ID to new price): the medicine prices are written as one
+     * JDBC batch and the affected cart lines repriced set-based, without loading any of them.
+     * Returns the number of medicines updated; unknown IDs are skipped.
+     */
+    public int updatePrices(Map<Long, Money> prices) {
+        for (Money price : prices.values()) {
+            if (price == null || !price.isPositive()) {
+                throw new RuntimeException("Price must be greater than 0");
+            }
+        }
+        List<Long> updatedIds = medicineRepository.setPrices(prices);
+        if (updatedIds.isEmpty()) {
+            return 0;
+        }
+        cartRepository.repriceLines(updatedIds);
+        afterCommit(() -> {
+            for (Medicine medicine : medicineRepository.findAllById(updatedIds)) {
+                refreshIndexes(medicine);
+            }
+            cartService.invalidateCartTotals();
+        });
+        return updatedIds.size();
     }
     
     /**
@@ -167,12 +430,14 @@ public class MedicineService {
             Medicine medicine = medicineOptional.get();
             medicine.setIsActive(false);
             medicineRepository.save(medicine);
+            afterCommit(() -> removeFromIndexes(id));
         }
     }
     
     /**
      * Check if medicine is in stock
      */
+    @Transactional(readOnly = true)
     public boolean isMedicineInStock(Long medicineId, Integer requiredQuantity) {
         Optional<Medicine> medicineOptional = medicineRepository.findById(medicineId);
         if (medicineOptional.isPresent()) {
@@ -186,24 +451,104 @@ public class MedicineService {
      * Update stock quantity
      */
     public void updateStockQuantity(Long medicineId, Integer newQuantity) {
-        Optional<Medicine> medicineOptional = medicineRepository.findById(medicineId);
-        if (medicineOptional.isPresent()) {
-            Medicine medicine = medicineOptional.get();
-            medicine.setStockQuantity(newQuantity);
-            medicineRepository.save(medicine);
+        if (medicineRepository.setStock(medicineId, newQuantity)) {
+            afterCommit(() -> refreshStock(medicineId));
         }
     }
     
     /**
-     * Reduce stock quantity
+     * Reduce stock quantity (a sale); one conditional UPDATE, taken through the reservation
+     * counters so concurrent sales and cart reservations can never oversell together.
+     * Returns false (and changes nothing) if less than the quantity is available.
      */
-    public void reduceStockQuantity(Long medicineId, Integer quantity) {
-        Optional<Medicine> medicineOptional = medicineRepository.findById(medicineId);
-        if (medicineOptional.isPresent()) {
-            Medicine medicine = medicineOptional.get();
-            int newQuantity = medicine.getStockQuantity() - quantity;
-            medicine.setStockQuantity(Math.max(0, newQuantity));
-            medicineRepository.save(medicine);
+    public boolean reduceStockQuantity(Long medicineId, Integer quantity) {
+        if (stockReservationService.trySell(medicineId, quantity)) {
+            afterCommit(() -> medicineRepository.findById(medicineId).ifPresent(this::refreshIndexes));
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Re-read a medicine whose stock was updated in SQL and refresh the stock counters and indexes
+     */
+    private void refreshStock(Long medicineId) {
+        stockReservationService.onStockChanged(medicineId);
+        medicineRepository.findById(medicineId).ifPresent(this::refreshIndexes);
+    }
+    
+    /**
+     * Bring the in-memory indexes up to date with a saved medicine; stock_quantity is insert-only
+     * in the entity, so saves never move the stock counters
+     */
+    private void refreshIndexes(Medicine medicine) {
+        searchIndex.index(medicine);
+        suggestionIndex.index(medicine);
+        facetIndex.index(medicine);
+    }
+    
+    /**
+     * Drop a deactivated medicine from the in-memory indexes
+     */
+    private void removeFromIndexes(Long medicineId) {
+        searchIndex.remove(medicineId);
+        suggestionIndex.remove(medicineId);
+        facetIndex.remove(medicineId);
+    }
+    
+    /**
+     * Load medicines by ID, keeping the order of the given IDs
+     */
+    private List<Medicine> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Medicine> medicinesById = new HashMap<>();
+        for (Medicine medicine : medicineRepository.findAllById(ids)) {
+            medicinesById.put(medicine.getId(), medicine);
+        }
+        List<Medicine> medicines = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Medicine medicine = medicinesById.get(id);
+            if (medicine != null) {
+                medicines.add(medicine);
+            }
+        }
+        return medicines;
+    }
+    
+    /**
+     * Load medicine summaries by ID, keeping the order of the given IDs
+     */
+    private List<MedicineSummary> loadSummariesInOrder(List<Long> ids) {
+        Map<Long, MedicineSummary> summariesById = new HashMap<>();
+        for (MedicineSummary summary : medicineRepository.findSummariesByIds(ids)) {
+            summariesById.put(summary.getId(), summary);
+        }
+        List<MedicineSummary> summaries = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            MedicineSummary summary = summariesById.get(id);
+            if (summary != null) {
+                summaries.add(summary);
+            }
+        }
+        return summaries;
+    }
+    
+    /**
+     * Run an in-memory index update once the current transaction commits,
+     * so a rolled back change never becomes visible to searches
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
         }
     }
 }
@@ -0,0 +1,209 @@
+package com.medicine.site.service;
+
+import com.medicine.site.dto.MedicineSuggestionDto;
+import com.medicine.site.entity.Medicine;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Type-ahead suggestions over medicine names and generic names.
+ *
+ * Entries are kept in an immutable array sorted by their lower-cased key, so all
+ * completions of a prefix form one contiguous range found with two binary searches.
+ * Writers build a new array and publish it atomically; readers never lock.
+ */
+@Component
+public class MedicineSuggestionIndex {
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private static final Comparator<Entry> BY_KEY =
+            Comparator.comparing(Entry::key).thenComparing(entry -> entry.medicine().id());
+
+    private volatile Entry[] entries = EMPTY;
+
+    private final Map<Long, LongAdder> popularity = new ConcurrentHashMap<>();
+
+    /**
+     * Rebuild all suggestions from the given active medicines
+     */
+    public synchronized void rebuild(Collection<Medicine> medicines) {
+        List<Entry> built = new ArrayList<>();
+        for (Medicine medicine : medicines) {
+            addEntries(built, medicine);
+        }
+        Entry[] sorted = built.toArray(EMPTY);
+        Arrays.sort(sorted, BY_KEY);
+        entries = sorted;
+    }
+
+    /**
+     * Add or refresh the suggestions of a medicine; inactive medicines are removed
+     */
+    public synchronized void index(Medicine medicine) {
+        if (medicine == null || medicine.getId() == null) {
+            return;
+        }
+        List<Entry> additions = new ArrayList<>(2);
+        addEntries(additions, medicine);
+        additions.sort(BY_KEY);
+        entries = merge(without(entries, medicine.getId()), additions);
+    }
+
+    /**
+     * Remove the suggestions of a medicine
+     */
+    public synchronized void remove(Long medicineId) {
+        entries = without(entries, medicineId);
+    }
+
+    /**
+     * Count a new cart line towards the medicine's popularity
+     */
+    public void recordPopularity(Long medicineId) {
+        popularity.computeIfAbsent(medicineId, id -> new LongAdder()).increment();
+    }
+
+    /**
+     * Seed the popularity counters with cart line counts, e.g. from the carts stored in the database
+     */
+    public void seedPopularity(Long medicineId, long lines) {
+        popularity.computeIfAbsent(medicineId, id -> new LongAdder()).add(lines);
+    }
+
+    /**
+     * Get up to {@code limit} medicines whose name or generic name starts with the prefix,
+     * in-stock and popular medicines first
+     */
+    public List<MedicineSuggestionDto> suggest(String prefix, int limit) {
+        String key = MedicineSearchIndex.normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        Entry[] snapshot = entries;
+        int from = lowerBound(snapshot, key);
+        Comparator<Suggested> ranking = rankingOrder();
+        PriorityQueue<Suggested> best = new PriorityQueue<>(limit + 1, ranking.reversed());
+        Set<Long> seen = new HashSet<>();
+
+        for (int i = from; i < snapshot.length && snapshot[i].key().startsWith(key); i++) {
+            Entry entry = snapshot[i];
+            if (!seen.add(entry.medicine().id())) {
+                continue;
+            }
+            best.add(new Suggested(entry, popularityOf(entry.medicine().id())));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<Suggested> ranked = new ArrayList<>(best);
+        ranked.sort(ranking);
+        List<MedicineSuggestionDto> suggestions = new ArrayList<>(ranked.size());
+        for (Suggested suggested : ranked) {
+            SuggestedMedicine medicine = suggested.entry().medicine();
+            suggestions.add(new MedicineSuggestionDto(medicine.id(), medicine.name(), medicine.genericName(),
+                    suggested.entry().label(), medicine.stockQuantity()));
+        }
+        return suggestions;
+    }
+
+    private long popularityOf(Long medicineId) {
+        LongAdder counter = popularity.get(medicineId);
+        return counter == null ? 0L : counter.sum();
+    }
+
+    private static Comparator<Suggested> rankingOrder() {
+        return Comparator.comparing((Suggested s) -> s.entry().medicine().stockQuantity() <= 0)
+                .thenComparing(Suggested::popularity, Comparator.reverseOrder())
+                .thenComparing(s -> s.entry().medicine().stockQuantity(), Comparator.reverseOrder())
+                .thenComparing(s -> s.entry().key());
+    }
+
+    private static void addEntries(List<Entry> target, Medicine medicine) {
+        if (medicine.getId() == null || !Boolean.TRUE.equals(medicine.getIsActive())) {
+            return;
+        }
+        int stock = medicine.getStockQuantity() != null ? medicine.getStockQuantity() : 0;
+        SuggestedMedicine suggested = new SuggestedMedicine(medicine.getId(), medicine.getName(),
+                medicine.getGenericName(), stock);
+        String nameKey = MedicineSearchIndex.normalize(medicine.getName());
+        String genericKey = MedicineSearchIndex.normalize(medicine.getGenericName());
+        if (!nameKey.isEmpty()) {
+            target.add(new Entry(nameKey, medicine.getName(), suggested));
+        }
+        if (!genericKey.isEmpty() && !genericKey.equals(nameKey)) {
+            target.add(new Entry(genericKey, medicine.getGenericName(), suggested));
+        }
+    }
+
+    private static int lowerBound(Entry[] snapshot, String key) {
+        int low = 0;
+        int high = snapshot.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (snapshot[mid].key().compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Entry[] without(Entry[] source, Long medicineId) {
+        int removed = 0;
+        for (Entry entry : source) {
+            if (entry.medicine().id().equals(medicineId)) {
+                removed++;
+            }
+        }
+        if (removed == 0) {
+            return source;
+        }
+        Entry[] result = new Entry[source.length - removed];
+        int i = 0;
+        for (Entry entry : source) {
+            if (!entry.medicine().id().equals(medicineId)) {
+                result[i++] = entry;
+            }
+        }
+        return result;
+    }
+
+    private static Entry[] merge(Entry[] sorted, List<Entry> additions) {
+        if (additions.isEmpty()) {
+            return sorted;
+        }
+        Entry[] result = new Entry[sorted.length + additions.size()];
+        int i = 0;
+        int a = 0;
+        int r = 0;
+        while (i < sorted.length || a < additions.size()) {
+            if (a == additions.size() || (i < sorted.length && BY_KEY.compare(sorted[i], additions.get(a)) <= 0)) {
+                result[r++] = sorted[i++];
+            } else {
+                result[r++] = additions.get(a++);
+            }
+        }
+        return result;
+    }
+
+    private record SuggestedMedicine(Long id, String name, String genericName, int stockQuantity) {}
+
+    private record Entry(String key, String label, SuggestedMedicine medicine) {}
+
+    private record Suggested(Entry entry, long popularity) {}
+}
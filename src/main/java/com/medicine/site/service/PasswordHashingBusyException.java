@@ -0,0 +1,11 @@
+package com.medicine.site.service;
+
+/**
+ * The password hashing queue is full; the caller should answer 503 and let the client retry
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+    
+    public PasswordHashingBusyException() {
+        super("Too many sign-in requests right now. Please try again in a moment.");
+    }
+}
@@ -0,0 +1,194 @@
+package com.medicine.site.service;
+
+import com.medicine.site.dto.PasswordHashingStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt hashing and verification on a small pool of its own, sized to the CPU,
+ * with a bounded queue in front of it. A burst of logins therefore queues here instead
+ * of occupying every request thread, and once the queue is full further requests are
+ * turned away at once with {@link PasswordHashingBusyException} rather than waiting.
+ *
+ * Request threads are virtual ({@code spring.threads.virtual.enabled}), so a request
+ * waiting for its hash releases its carrier thread to other requests.
+ *
+ * Besides {@link #getStats()}, the pool publishes the timers password.hashing (per operation)
+ * and password.hashing.queue.wait, the counter password.hashing.rejected and gauges of its
+ * queue depth and busy threads.
+ */
+@Service
+public class PasswordHashingService {
+    
+    @Autowired
+    private BCryptPasswordEncoder passwordEncoder;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Hashing threads; 0 means half the available processors, so a login storm leaves cores for other requests
+    @Value("${security.password-hashing.threads:0}")
+    private int threads;
+    
+    @Value("${security.password-hashing.queue-capacity:64}")
+    private int queueCapacity;
+    
+    private ThreadPoolExecutor executor;
+    
+    private final LongAdder completed = new LongAdder();
+    
+    private final LongAdder rejected = new LongAdder();
+    
+    private final LongAdder queueWaitNanos = new LongAdder();
+    
+    private final LongAdder hashingNanos = new LongAdder();
+    
+    private final LongAccumulator maxQueueWaitNanos = new LongAccumulator(Math::max, 0);
+    
+    private final LongAccumulator maxHashingNanos = new LongAccumulator(Math::max, 0);
+    
+    private Timer encodeTimer;
+    
+    private Timer matchesTimer;
+    
+    private Timer queueWaitTimer;
+    
+    private Counter rejectedCounter;
+    
+    @PostConstruct
+    public void start() {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.prestartAllCoreThreads();
+        
+        encodeTimer = hashingTimer("encode");
+        matchesTimer = hashingTimer("matches");
+        queueWaitTimer = Timer.builder("password.hashing.queue.wait")
+                .description("Time a hashing request waited for a free hashing thread")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("password.hashing.rejected")
+                .description("Hashing requests turned away because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Hashing requests waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Hashing threads busy")
+                .register(meterRegistry);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+    
+    /**
+     * Hash a raw password; blocks the calling (virtual) thread until done
+     */
+    public String encode(String rawPassword) {
+        return await(submit(encodeTimer, () -> passwordEncoder.encode(rawPassword)));
+    }
+    
+    /**
+     * Check a raw password against a stored hash; blocks the calling (virtual) thread until done
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return await(submit(matchesTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+    
+    /**
+     * Queue depth, pool activity and latency of the hashing pool
+     */
+    public PasswordHashingStats getStats() {
+        long count = completed.sum();
+        PasswordHashingStats stats = new PasswordHashingStats();
+        stats.setPoolSize(executor.getMaximumPoolSize());
+        stats.setActiveThreads(executor.getActiveCount());
+        stats.setQueueDepth(executor.getQueue().size());
+        stats.setQueueCapacity(queueCapacity);
+        stats.setCompleted(count);
+        stats.setRejected(rejected.sum());
+        stats.setAverageQueueWaitMillis(count == 0 ? 0 : queueWaitNanos.sum() / count / 1_000_000.0);
+        stats.setMaxQueueWaitMillis(maxQueueWaitNanos.get() / 1_000_000.0);
+        stats.setAverageHashingMillis(count == 0 ? 0 : hashingNanos.sum() / count / 1_000_000.0);
+        stats.setMaxHashingMillis(maxHashingNanos.get() / 1_000_000.0);
+        return stats;
+    }
+    
+    private Timer hashingTimer(String operation) {
+        return Timer.builder("password.hashing")
+                .description("BCrypt hashing time, excluding the wait for a thread")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+    
+    private <T> CompletableFuture<T> submit(Timer timer, Supplier<T> work) {
+        long queued = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long started = System.nanoTime();
+                try {
+                    return work.get();
+                } finally {
+                    long finished = System.nanoTime();
+                    queueWaitNanos.add(started - queued);
+                    maxQueueWaitNanos.accumulate(started - queued);
+                    hashingNanos.add(finished - started);
+                    maxHashingNanos.accumulate(finished - started);
+                    completed.increment();
+                    queueWaitTimer.record(started - queued, TimeUnit.NANOSECONDS);
+                    timer.record(finished - started, TimeUnit.NANOSECONDS);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            rejectedCounter.increment();
+            throw new PasswordHashingBusyException();
+        }
+    }
+    
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
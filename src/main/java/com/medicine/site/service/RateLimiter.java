@@ -0,0 +1,157 @@
+package com.medicine.site.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process token buckets per route and client, in lock-striped tables of fixed size.
+ *
+ * A bucket is kept in its GCRA form: a single "theoretical arrival time" per client instead
+ * of a token count and a refill timestamp. A request is allowed while that time is no more
+ * than the burst allowance ahead of now, and each allowed request pushes it one emission
+ * interval further. Once it falls behind now the bucket is full again and remembers nothing,
+ * so such idle buckets are dropped as they are met. Each stripe holds at most its share of
+ * {@code rate-limit.max-clients} buckets; past that the least recently used one is evicted,
+ * which at worst hands that client a fresh bucket.
+ */
+@Component
+public class RateLimiter {
+    
+    // Buckets kept per route; bounds the limiter's memory whatever the number of clients
+    @Value("${rate-limit.max-clients:100000}")
+    private int maxClients;
+    
+    @Value("${rate-limit.stripes:64}")
+    private int stripes;
+    
+    // Idle buckets checked for removal on each request, so the tables clean themselves up
+    private static final int IDLE_SWEEP = 2;
+    
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    
+    /**
+     * Take one token for the client on the route.
+     *
+     * @return 0 if the request is allowed, otherwise the nanoseconds until it would be
+     */
+    public long tryAcquire(String route, int capacity, int perMinute, String client) {
+        return tryAcquire(route, capacity, perMinute, client, System.nanoTime());
+    }
+    
+    long tryAcquire(String route, int capacity, int perMinute, String client, long now) {
+        Route limits = routes.get(route);
+        if (limits == null || limits.capacity != capacity || limits.perMinute != perMinute) {
+            limits = routes.compute(route, (name, current) ->
+                    current != null && current.capacity == capacity && current.perMinute == perMinute
+                            ? current : new Route(capacity, perMinute, stripes, maxClients));
+        }
+        return limits.tryAcquire(client, now);
+    }
+    
+    /**
+     * Buckets currently held for the route
+     */
+    public int getClientCount(String route) {
+        Route limits = routes.get(route);
+        return limits == null ? 0 : limits.size();
+    }
+    
+    private static final class Route {
+        private final int capacity;
+        private final int perMinute;
+        private final long emissionInterval;
+        private final long burstAllowance;
+        private final Stripe[] stripes;
+        private final int mask;
+        
+        Route(int capacity, int perMinute, int stripeCount, int maxClients) {
+            this.capacity = capacity;
+            this.perMinute = perMinute;
+            this.emissionInterval = TimeUnit.MINUTES.toNanos(1) / Math.max(perMinute, 1);
+            this.burstAllowance = emissionInterval * (Math.max(capacity, 1) - 1);
+            int size = Integer.highestOneBit(Math.max(stripeCount, 1) * 2 - 1);
+            this.stripes = new Stripe[size];
+            this.mask = size - 1;
+            int perStripe = Math.max(maxClients / size, 1);
+            for (int i = 0; i < size; i++) {
+                stripes[i] = new Stripe(perStripe);
+            }
+        }
+        
+        long tryAcquire(String client, long now) {
+            int hash = client.hashCode();
+            Stripe stripe = stripes[(hash ^ (hash >>> 16)) & mask];
+            stripe.lock.lock();
+            try {
+                stripe.sweepIdle(now);
+                Bucket bucket = stripe.buckets.get(client);
+                long arrival = bucket == null ? now : Math.max(bucket.arrival, now);
+                long wait = arrival - burstAllowance - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (bucket == null) {
+                    stripe.buckets.put(client, new Bucket(arrival + emissionInterval));
+                } else {
+                    bucket.arrival = arrival + emissionInterval;
+                }
+                return 0;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        
+        int size() {
+            int size = 0;
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    size += stripe.buckets.size();
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            return size;
+        }
+    }
+    
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Bucket> buckets;
+        
+        Stripe(int maxBuckets) {
+            // Access order, so the eldest entries are the least recently used
+            this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > maxBuckets;
+                }
+            };
+        }
+        
+        void sweepIdle(long now) {
+            Iterator<Bucket> eldest = buckets.values().iterator();
+            for (int i = 0; i < IDLE_SWEEP && eldest.hasNext(); i++) {
+                if (eldest.next().arrival - now > 0) {
+                    return;
+                }
+                eldest.remove();
+            }
+        }
+    }
+    
+    private static final class Bucket {
+        private long arrival;
+        
+        Bucket(long arrival) {
+            this.arrival = arrival;
+        }
+    }
+}
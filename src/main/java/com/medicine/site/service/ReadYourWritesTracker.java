@@ -0,0 +1,79 @@
+package com.medicine.site.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Remembers which users changed their cart in the last few seconds, so that their own
+ * read-only transactions go to the primary database instead of a replica that may not have
+ * caught up yet. A request is pinned to the primary for the current thread; the routing
+ * data source consults {@link #isCurrentThreadPinned()} when a read-only transaction starts.
+ */
+@Component
+public class ReadYourWritesTracker {
+    
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+    
+    // How long after a write the user's reads stay on the primary; longer than the replica lag
+    @Value("${datasource.read-your-writes-window:5s}")
+    private Duration window;
+    
+    @Value("${datasource.read-your-writes-max-users:100000}")
+    private long maxUsers;
+    
+    private Cache<Long, Boolean> recentWriters;
+    
+    @PostConstruct
+    void createRecentWritersCache() {
+        recentWriters = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(window)
+                .build();
+    }
+    
+    /**
+     * Record that the user's write has committed; starts (or restarts) their window
+     */
+    public void recordWrite(Long userId) {
+        if (userId != null) {
+            recentWriters.put(userId, Boolean.TRUE);
+        }
+    }
+    
+    /**
+     * Whether the user wrote within the window
+     */
+    public boolean hasRecentWrite(Long userId) {
+        return userId != null && recentWriters.getIfPresent(userId) != null;
+    }
+    
+    /**
+     * Pin the current thread to the primary if the user wrote within the window
+     */
+    public boolean pinIfRecentWrite(Long userId) {
+        if (hasRecentWrite(userId)) {
+            PINNED.set(Boolean.TRUE);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Let the current thread's read-only transactions use replicas again
+     */
+    public static void unpinCurrentThread() {
+        PINNED.remove();
+    }
+    
+    /**
+     * Whether read-only transactions on this thread must use the primary
+     */
+    public static boolean isCurrentThreadPinned() {
+        return PINNED.get() != null;
+    }
+}
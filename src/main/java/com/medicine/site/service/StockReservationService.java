@@ -0,0 +1,712 @@
+package com.medicine.site.service;
+
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.repository.MedicineRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory stock reservations for cart items.
+ *
+ * Every medicine gets a dense slot holding two lock-free counters: the quantity still
+ * available to reserve, and the net change not yet written to the database. Adding to a
+ * cart reserves with a compare-and-set on the available counter, so hot medicines no
+ * longer contend for a row lock. The pending changes are written behind in one batch,
+ * on a schedule or once enough of them have piled up.
+ *
+ * {@code medicines.stock_quantity} holds the stock left after the flushed reservations,
+ * and {@code medicines.reserved_quantity} the flushed reservations themselves. The cart
+ * rows are the durable record of what is reserved, so on startup any difference between
+ * their sum and {@code reserved_quantity} (changes lost in a crash before a flush) is
+ * moved back into {@code stock_quantity}. A flush moves quantity between the two columns
+ * and leaves their sum alone, so an admin stock change is the change in that sum; it is
+ * applied to the available counter as a difference, ordered by the row version. A sale
+ * ({@link #trySell}) takes from the counter and from {@code stock_quantity} together, and
+ * is accounted the same way once it commits.
+ *
+ * Medicines marked hot (e.g. flash-sale items) have their available stock split over
+ * several cache-line-padded shards instead of one counter, so concurrent reservations
+ * of the same medicine mostly touch different cache lines. A reservation takes from the
+ * shard picked by its thread and steals from the sibling shards when that one runs dry.
+ */
+@Service
+public class StockReservationService {
+
+    // Slots live in fixed-size chunks so the counters never have to be copied when growing
+    private static final int CHUNK_BITS = 10;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final String FLUSH_SQL =
+            "UPDATE medicines SET stock_quantity = stock_quantity + ?, reserved_quantity = reserved_quantity - ? WHERE id = ?";
+
+    private static final String STOCK_SQL =
+            "SELECT id, stock_quantity, reserved_quantity, version FROM medicines";
+
+    private static final String CART_RESERVED_SQL =
+            "COALESCE((SELECT SUM(c.quantity) FROM cart_items c WHERE c.medicine_id = medicines.id), 0)";
+
+    // Stock never goes below zero, even if the carts hold more than was ever in stock
+    private static final String RECONCILE_SQL =
+            "UPDATE medicines SET stock_quantity = CASE WHEN stock_quantity + reserved_quantity < " + CART_RESERVED_SQL +
+            " THEN 0 ELSE stock_quantity + reserved_quantity - " + CART_RESERVED_SQL + " END, " +
+            "reserved_quantity = " + CART_RESERVED_SQL + " " +
+            "WHERE reserved_quantity <> " + CART_RESERVED_SQL;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Longs per hot shard: 128 bytes, so two shards never share a (prefetched) cache line pair
+    private static final int SHARD_STRIDE = 16;
+    
+    // A hot shard reports its changes to the flush threshold in steps of this many
+    private static final int HOT_CHANGE_STEP = 64;
+    
+    @Value("${stock.reservations.flush-threshold:500}")
+    private int flushThreshold;
+    
+    // Medicine IDs reserved through sharded counters from startup
+    @Value("${stock.reservations.hot-items:}")
+    private List<Long> hotItems;
+    
+    // Shards per hot medicine; 0 means one per available processor
+    @Value("${stock.reservations.hot-shards:0}")
+    private int hotShards;
+
+    private final Map<Long, Integer> slotsByMedicineId = new ConcurrentHashMap<>();
+    
+    private final Map<Long, HotCounter> hotCounters = new ConcurrentHashMap<>();
+
+    private volatile Chunk[] chunks = new Chunk[0];
+
+    private volatile int slotCount = 0;
+
+    private final AtomicInteger unflushedChanges = new AtomicInteger();
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * Reconcile the database with the stored carts, then load every medicine's stock
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void reconcile() {
+        jdbcTemplate.update(RECONCILE_SQL);
+        entityManagerFactory.getCache().evict(Medicine.class);
+        jdbcTemplate.query(STOCK_SQL, (RowCallbackHandler) rs ->
+                resetStock(rs.getLong(1), rs.getInt(2), rs.getInt(2) + rs.getInt(3), rs.getLong(4)));
+        for (Long medicineId : hotItems) {
+            markHot(medicineId);
+        }
+    }
+    
+    /**
+     * Switch a medicine to sharded counters, for items about to get many concurrent
+     * reservations; false if the medicine does not exist
+     */
+    public synchronized boolean markHot(Long medicineId) {
+        int slot = slotFor(medicineId);
+        if (slot < 0) {
+            return false;
+        }
+        if (!hotCounters.containsKey(medicineId)) {
+            HotCounter hot = new HotCounter(shardCount());
+            hotCounters.put(medicineId, hot);
+            // Publish first, then move the stock over: later reservations already go to the shards
+            hot.spreadAdd(chunk(slot).available.getAndSet(slot & CHUNK_MASK, 0));
+        }
+        return true;
+    }
+    
+    /**
+     * Whether a medicine is reserved through sharded counters
+     */
+    public boolean isHot(Long medicineId) {
+        return hotCounters.containsKey(medicineId);
+    }
+
+    /**
+     * Reserve the quantity if that much is available; false (and nothing reserved) otherwise
+     */
+    public boolean tryReserve(Long medicineId, int quantity) {
+        return take(medicineId, quantity, true);
+    }
+    
+    /**
+     * Sell stock outright (not out of a cart): the quantity is taken from the available counter
+     * first, so it can never also be reserved, then from stock_quantity with one conditional
+     * UPDATE in the caller's transaction. False (and nothing taken) if either has too little;
+     * stock released by carts but not flushed yet only counts once it is flushed.
+     */
+    public boolean trySell(Long medicineId, int quantity) {
+        if (!take(medicineId, quantity, false)) {
+            return false;
+        }
+        // Once registered, the synchronization alone decides what happens to the taken quantity
+        AtomicBoolean handedOver = new AtomicBoolean();
+        try {
+            Boolean sold = new TransactionTemplate(transactionManager).execute(status -> {
+                if (!medicineRepository.decrementStock(medicineId, quantity)) {
+                    return false;
+                }
+                // The row stays locked until commit, so this is exactly the version the sale wrote
+                long[] row = readStock(medicineId);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    private boolean applied;
+                    
+                    // Still under the row lock, so sales of one medicine are applied in version order
+                    @Override
+                    public void beforeCommit(boolean readOnly) {
+                        onSold(medicineId, quantity, row);
+                        applied = true;
+                    }
+                    
+                    @Override
+                    public void afterCompletion(int completion) {
+                        if (completion == STATUS_COMMITTED) {
+                            return;
+                        }
+                        if (applied) {
+                            undoSold(medicineId, quantity, row);
+                        } else {
+                            giveBack(medicineId, quantity);
+                        }
+                    }
+                });
+                handedOver.set(true);
+                return true;
+            });
+            if (!Boolean.TRUE.equals(sold)) {
+                giveBack(medicineId, quantity);
+                return false;
+            }
+            return true;
+        } catch (RuntimeException e) {
+            if (!handedOver.get()) {
+                giveBack(medicineId, quantity);
+            }
+            throw e;
+        }
+    }
+    
+    // Take from the available stock; a reservation also records the change for the flush
+    private boolean take(Long medicineId, int quantity, boolean reserve) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        HotCounter hot = hotCounters.get(medicineId);
+        if (hot != null) {
+            return tryReserveHot(hot, medicineId, quantity, reserve);
+        }
+        int slot = slotFor(medicineId);
+        if (slot < 0) {
+            return false;
+        }
+        Chunk chunk = chunk(slot);
+        int index = slot & CHUNK_MASK;
+        long current;
+        do {
+            current = chunk.available.get(index);
+            if (current < quantity) {
+                // The medicine may have just been switched to shards
+                hot = hotCounters.get(medicineId);
+                return hot != null && tryReserveHot(hot, medicineId, quantity, reserve);
+            }
+        } while (!chunk.available.compareAndSet(index, current, current - quantity));
+        if (reserve) {
+            chunk.pending.addAndGet(index, -quantity);
+            changed(1);
+        }
+        return true;
+    }
+    
+    private boolean tryReserveHot(HotCounter hot, Long medicineId, int quantity, boolean reserve) {
+        int home = hot.home();
+        if (hot.take(home, quantity)) {
+            if (reserve) {
+                hot.recordChange(home, -quantity);
+            }
+            return true;
+        }
+        // Stock left behind on the plain counter by a reservation racing with markHot
+        int slot = slotsByMedicineId.get(medicineId);
+        long stray = chunk(slot).available.getAndSet(slot & CHUNK_MASK, 0);
+        if (stray != 0) {
+            hot.add(home, stray);
+        }
+        if (hot.steal(home, quantity)) {
+            if (reserve) {
+                hot.recordChange(home, -quantity);
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    // Return stock taken for a sale that did not happen; nothing to flush
+    private void giveBack(Long medicineId, int quantity) {
+        int slot = slotsByMedicineId.get(medicineId);
+        HotCounter hot = hotCounters.get(medicineId);
+        if (hot != null) {
+            hot.add(hot.home(), quantity);
+        } else {
+            chunk(slot).available.addAndGet(slot & CHUNK_MASK, quantity);
+        }
+    }
+    
+    /**
+     * Account a sale about to commit whose quantity was already taken from the available stock.
+     * It runs while the sale still holds the row lock, so every earlier sale has been applied
+     * and the row only adds changes whose re-reads are still on their way; it is applied like
+     * any other re-read, less the quantity already taken. If a re-read at or after the sale's
+     * version got there first, it already took the quantity off the total, so it is given back.
+     */
+    private void onSold(Long medicineId, int quantity, long[] row) {
+        int slot = slotsByMedicineId.get(medicineId);
+        Chunk chunk = chunk(slot);
+        int index = slot & CHUNK_MASK;
+        long delta;
+        synchronized (chunk) {
+            if (row[2] <= chunk.version.get(index)) {
+                delta = quantity;
+            } else {
+                chunk.version.set(index, row[2]);
+                delta = row[1] - chunk.total.getAndSet(index, row[1]) + quantity;
+            }
+        }
+        HotCounter hot = hotCounters.get(medicineId);
+        if (hot != null) {
+            hot.spreadAdd(delta);
+        } else {
+            chunk.available.addAndGet(index, delta);
+        }
+    }
+
+    /**
+     * Take back a sale applied just before its commit failed: the row is back at the version
+     * before the sale, so step the counters back to it, then re-read in case a newer change
+     * has already reused the sale's version
+     */
+    private void undoSold(Long medicineId, int quantity, long[] row) {
+        int slot = slotsByMedicineId.get(medicineId);
+        Chunk chunk = chunk(slot);
+        int index = slot & CHUNK_MASK;
+        synchronized (chunk) {
+            if (chunk.version.get(index) == row[2]) {
+                chunk.version.set(index, row[2] - 1);
+                chunk.total.addAndGet(index, quantity);
+            }
+        }
+        giveBack(medicineId, quantity);
+        onStockChanged(medicineId);
+    }
+    
+    /**
+     * Give a reserved quantity back
+     */
+    public void release(Long medicineId, int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+        HotCounter hot = hotCounters.get(medicineId);
+        if (hot != null) {
+            int home = hot.home();
+            hot.add(home, quantity);
+            hot.recordChange(home, quantity);
+            return;
+        }
+        int slot = slotFor(medicineId);
+        if (slot < 0) {
+            return;
+        }
+        Chunk chunk = chunk(slot);
+        int index = slot & CHUNK_MASK;
+        chunk.available.addAndGet(index, quantity);
+        chunk.pending.addAndGet(index, quantity);
+        changed(1);
+    }
+
+    /**
+     * Quantity still available to reserve (negative if more is reserved than in stock)
+     */
+    public long getAvailable(Long medicineId) {
+        int slot = slotFor(medicineId);
+        if (slot < 0) {
+            return 0;
+        }
+        long available = chunk(slot).available.get(slot & CHUNK_MASK);
+        HotCounter hot = hotCounters.get(medicineId);
+        return hot != null ? available + hot.available() : available;
+    }
+
+    /**
+     * Take over a committed stock change written to the database outside this service (e.g.
+     * an admin stock update). Reservations and flushes racing with it are kept: only the
+     * difference is added to the available stock, and a re-read older than one already
+     * applied is ignored.
+     */
+    public void onStockChanged(Long medicineId) {
+        long[] row = readStock(medicineId);
+        if (row == null) {
+            return;
+        }
+        int slot = slotFor(medicineId, row[0], row[1], row[2]);
+        Chunk chunk = chunk(slot);
+        int index = slot & CHUNK_MASK;
+        long delta;
+        synchronized (chunk) {
+            if (row[2] <= chunk.version.get(index)) {
+                return;
+            }
+            chunk.version.set(index, row[2]);
+            delta = row[1] - chunk.total.getAndSet(index, row[1]);
+        }
+        HotCounter hot = hotCounters.get(medicineId);
+        if (hot != null) {
+            hot.spreadAdd(delta);
+        } else {
+            chunk.available.addAndGet(index, delta);
+        }
+    }
+    
+    // Replace the stock of a medicine outright; only safe before reservations start (reconcile)
+    private void resetStock(Long medicineId, int stockQuantity, long total, long version) {
+        int slot = slotFor(medicineId, stockQuantity, total, version);
+        Chunk chunk = chunk(slot);
+        int index = slot & CHUNK_MASK;
+        synchronized (chunk) {
+            chunk.version.set(index, version);
+            chunk.total.set(index, total);
+        }
+        HotCounter hot = hotCounters.get(medicineId);
+        if (hot != null) {
+            chunk.available.set(index, 0);
+            hot.spread(stockQuantity + chunk.pending.get(index) + hot.pending());
+        } else {
+            chunk.available.set(index, stockQuantity + chunk.pending.get(index));
+        }
+    }
+
+    /**
+     * Number of reservation changes not yet written to the database
+     */
+    public int getUnflushedChanges() {
+        return unflushedChanges.get();
+    }
+
+    /**
+     * Write the pending changes of all medicines to the database in one batch; waits for a
+     * flush already running, so everything reserved before the call is written on return
+     */
+    @Scheduled(fixedDelayString = "${stock.reservations.flush-interval-ms:1000}")
+    public void flush() {
+        List<Long> flushedIds;
+        flushLock.lock();
+        try {
+            flushedIds = writePending();
+        } finally {
+            flushLock.unlock();
+        }
+        if (!flushedIds.isEmpty()) {
+            eventPublisher.publishEvent(new StockFlushed(flushedIds));
+        }
+    }
+
+    // No event on shutdown: its listeners may already be gone
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushLock.lock();
+        try {
+            writePending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Write the pending changes; returns the IDs of the medicines whose stock was written
+     */
+    private List<Long> writePending() {
+        unflushedChanges.set(0);
+        // Read the count first: every slot below it already has its chunk published
+        int count = slotCount;
+        Chunk[] snapshot = chunks;
+        List<Object[]> batch = new ArrayList<>();
+        List<int[]> taken = new ArrayList<>();
+        for (int slot = 0; slot < count; slot++) {
+            Chunk chunk = snapshot[slot >>> CHUNK_BITS];
+            int index = slot & CHUNK_MASK;
+            long delta = chunk.pending.getAndSet(index, 0);
+            if (delta != 0) {
+                batch.add(new Object[]{delta, delta, chunk.medicineIds.get(index)});
+                taken.add(new int[]{slot, (int) delta});
+            }
+        }
+        // Fold the changes collected in the shards of hot medicines back in as well
+        for (Map.Entry<Long, HotCounter> entry : hotCounters.entrySet()) {
+            long delta = entry.getValue().drainPending();
+            if (delta != 0) {
+                batch.add(new Object[]{delta, delta, entry.getKey()});
+                taken.add(new int[]{slotsByMedicineId.get(entry.getKey()), (int) delta});
+            }
+        }
+        if (batch.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(FLUSH_SQL, batch));
+        } catch (RuntimeException e) {
+            // Nothing was written; keep the changes for the next flush
+            for (int[] change : taken) {
+                chunk(change[0]).pending.addAndGet(change[0] & CHUNK_MASK, change[1]);
+            }
+            unflushedChanges.addAndGet(taken.size());
+            throw e;
+        }
+
+        List<Long> flushedIds = new ArrayList<>(batch.size());
+        for (Object[] row : batch) {
+            entityManagerFactory.getCache().evict(Medicine.class, row[2]);
+            flushedIds.add((Long) row[2]);
+        }
+        return flushedIds;
+    }
+
+    private void changed(int count) {
+        int before = unflushedChanges.getAndAdd(count);
+        if (before < flushThreshold && before + count >= flushThreshold) {
+            taskScheduler.schedule(this::flush, Instant.now());
+        }
+    }
+    
+    private int shardCount() {
+        int shards = hotShards > 0 ? hotShards : Runtime.getRuntime().availableProcessors();
+        return Math.max(2, Integer.highestOneBit(shards - 1) << 1);
+    }
+
+    /**
+     * Slot of a medicine, loading its stock on first use; -1 if the medicine does not exist
+     */
+    private int slotFor(Long medicineId) {
+        Integer slot = slotsByMedicineId.get(medicineId);
+        if (slot != null) {
+            return slot;
+        }
+        long[] row = readStock(medicineId);
+        return row == null ? -1 : slotFor(medicineId, row[0], row[1], row[2]);
+    }
+
+    // Stock, stock plus reserved, and version of one medicine; null if it does not exist
+    private long[] readStock(Long medicineId) {
+        List<long[]> rows = jdbcTemplate.query(STOCK_SQL + " WHERE id = ?",
+                (rs, rowNum) -> new long[]{rs.getInt(2), rs.getInt(2) + rs.getInt(3), rs.getLong(4)}, medicineId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private int slotFor(Long medicineId, long initialStock, long total, long version) {
+        Integer slot = slotsByMedicineId.get(medicineId);
+        if (slot != null) {
+            return slot;
+        }
+        synchronized (this) {
+            slot = slotsByMedicineId.get(medicineId);
+            if (slot != null) {
+                return slot;
+            }
+            int newSlot = slotCount;
+            if ((newSlot >>> CHUNK_BITS) == chunks.length) {
+                Chunk[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+                grown[chunks.length] = new Chunk();
+                chunks = grown;
+            }
+            Chunk chunk = chunk(newSlot);
+            chunk.medicineIds.set(newSlot & CHUNK_MASK, medicineId);
+            chunk.available.set(newSlot & CHUNK_MASK, initialStock);
+            chunk.total.set(newSlot & CHUNK_MASK, total);
+            chunk.version.set(newSlot & CHUNK_MASK, version);
+            slotCount = newSlot + 1;
+            slotsByMedicineId.put(medicineId, newSlot);
+            return newSlot;
+        }
+    }
+
+    private Chunk chunk(int slot) {
+        return chunks[slot >>> CHUNK_BITS];
+    }
+
+    /**
+     * Published after a flush committed, with the medicines whose stock_quantity it changed
+     */
+    public record StockFlushed(List<Long> medicineIds) {}
+
+    // Counters of CHUNK_SIZE consecutive slots
+    private static final class Chunk {
+        final AtomicLongArray medicineIds = new AtomicLongArray(CHUNK_SIZE);
+        final AtomicLongArray available = new AtomicLongArray(CHUNK_SIZE);
+        final AtomicLongArray pending = new AtomicLongArray(CHUNK_SIZE);
+        // stock_quantity + reserved_quantity and version as last read; guarded by the chunk
+        final AtomicLongArray total = new AtomicLongArray(CHUNK_SIZE);
+        final AtomicLongArray version = new AtomicLongArray(CHUNK_SIZE);
+    }
+    
+    /**
+     * Sharded counters of one hot medicine. Each shard owns its own 128-byte stretch of
+     * the array: available stock, pending change and a change count.
+     */
+    private final class HotCounter {
+        private static final int AVAILABLE = 0;
+        private static final int PENDING = 1;
+        private static final int CHANGES = 2;
+        
+        private final AtomicLongArray cells;
+        
+        private final int mask;
+        
+        HotCounter(int shards) {
+            cells = new AtomicLongArray(shards * SHARD_STRIDE);
+            mask = shards - 1;
+        }
+        
+        // Shard of the calling thread
+        int home() {
+            long id = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+            return (int) (id >>> 32) & mask;
+        }
+        
+        // Take the whole quantity from one shard, or nothing
+        boolean take(int shard, int quantity) {
+            int cell = shard * SHARD_STRIDE + AVAILABLE;
+            long current;
+            do {
+                current = cells.get(cell);
+                if (current < quantity) {
+                    return false;
+                }
+            } while (!cells.compareAndSet(cell, current, current - quantity));
+            return true;
+        }
+        
+        // Gather the quantity from all shards, starting at home; gives back what it took if that is not enough
+        boolean steal(int home, int quantity) {
+            long taken = 0;
+            for (int i = 0; i <= mask && taken < quantity; i++) {
+                int cell = ((home + i) & mask) * SHARD_STRIDE + AVAILABLE;
+                long current;
+                long part;
+                do {
+                    current = cells.get(cell);
+                    part = Math.min(current, quantity - taken);
+                } while (part > 0 && !cells.compareAndSet(cell, current, current - part));
+                taken += Math.max(part, 0);
+            }
+            if (taken < quantity) {
+                add(home, taken);
+                return false;
+            }
+            return true;
+        }
+        
+        void add(int shard, long quantity) {
+            if (quantity != 0) {
+                cells.addAndGet(shard * SHARD_STRIDE + AVAILABLE, quantity);
+            }
+        }
+        
+        void recordChange(int shard, long delta) {
+            int base = shard * SHARD_STRIDE;
+            cells.addAndGet(base + PENDING, delta);
+            if ((cells.incrementAndGet(base + CHANGES) & (HOT_CHANGE_STEP - 1)) == 0) {
+                changed(HOT_CHANGE_STEP);
+            }
+        }
+        
+        long available() {
+            long sum = 0;
+            for (int shard = 0; shard <= mask; shard++) {
+                sum += cells.get(shard * SHARD_STRIDE + AVAILABLE);
+            }
+            return sum;
+        }
+        
+        long pending() {
+            long sum = 0;
+            for (int shard = 0; shard <= mask; shard++) {
+                sum += cells.get(shard * SHARD_STRIDE + PENDING);
+            }
+            return sum;
+        }
+        
+        long drainPending() {
+            long sum = 0;
+            for (int shard = 0; shard <= mask; shard++) {
+                sum += cells.getAndSet(shard * SHARD_STRIDE + PENDING, 0);
+            }
+            return sum;
+        }
+        
+        // Replace the available stock, split evenly over the shards
+        void spread(long total) {
+            for (int shard = 0; shard <= mask; shard++) {
+                cells.set(shard * SHARD_STRIDE + AVAILABLE, share(total, shard));
+            }
+        }
+        
+        // Add to the available stock, split evenly over the shards
+        void spreadAdd(long amount) {
+            for (int shard = 0; shard <= mask; shard++) {
+                add(shard, share(amount, shard));
+            }
+        }
+        
+        private long share(long total, int shard) {
+            int shards = mask + 1;
+            return Math.floorDiv(total, shards) + (shard < Math.floorMod(total, shards) ? 1 : 0);
+        }
+    }
+}
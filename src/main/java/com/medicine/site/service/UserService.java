@@ -3,11 +3,16 @@ package com.medicine.site.service;
 import com.medicine.site.entity.User;
 import com.medicine.site.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 @Transactional
@@ -17,34 +22,58 @@ public class UserService {
     private UserRepository userRepository;
     
     @Autowired
-    private BCryptPasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
+    
+    @Autowired
+    private UserUniquenessFilter uniquenessFilter;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
     
     /**
-     * Register a new user
+     * Register a new user. Runs without a surrounding transaction and looks up in short
+     * transactions of its own, so no database connection is held while the password is
+     * hashed; the save is its own transaction.
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public User registerUser(User user) {
-        // Check if username already exists
-        if (userRepository.existsByUsername(user.getUsername())) {
+        // Check if username or email already exist; the filters spare the queries for new names
+        if (uniquenessFilter.mightContainUsername(user.getUsername())
+                && lookup(() -> userRepository.existsByUsername(user.getUsername()))) {
             throw new RuntimeException("Username already exists: " + user.getUsername());
         }
-        
-        // Check if email already exists
-        if (userRepository.existsByEmail(user.getEmail())) {
+        if (uniquenessFilter.mightContainEmail(user.getEmail())
+                && lookup(() -> userRepository.existsByEmail(user.getEmail()))) {
             throw new RuntimeException("Email already exists: " + user.getEmail());
         }
         
         // Encrypt password
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
+        user.setPassword(passwordHashingService.encode(user.getPassword()));
         user.setIsActive(true);
         
-        return userRepository.save(user);
+        User saved;
+        try {
+            saved = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            // Lost a race with a concurrent registration of the same username or email
+            if (lookup(() -> userRepository.existsByUsername(user.getUsername()))) {
+                throw new RuntimeException("Username already exists: " + user.getUsername());
+            }
+            if (lookup(() -> userRepository.existsByEmail(user.getEmail()))) {
+                throw new RuntimeException("Email already exists: " + user.getEmail());
+            }
+            throw e;
+        }
+        uniquenessFilter.add(saved.getUsername(), saved.getEmail());
+        return saved;
     }
     
     /**
-     * Authenticate user login
+     * Authenticate user login; like registration, verifies the password outside any transaction
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public User authenticateUser(String usernameOrEmail, String password) {
-        Optional<User> userOptional = findByUsernameOrEmail(usernameOrEmail);
+        Optional<User> userOptional = lookup(() -> findByUsernameOrEmail(usernameOrEmail));
         
         if (userOptional.isEmpty()) {
             throw new RuntimeException("User not found: " + usernameOrEmail);
@@ -56,7 +85,7 @@ public class UserService {
             throw new RuntimeException("Account is deactivated");
         }
         
-        if (!passwordEncoder.matches(password, user.getPassword())) {
+        if (!passwordHashingService.matches(password, user.getPassword())) {
             throw new RuntimeException("Invalid password");
         }
         
@@ -66,21 +95,17 @@ public class UserService {
     /**
      * Find user by username or email
      */
+    @Transactional(readOnly = true)
     public Optional<User> findByUsernameOrEmail(String usernameOrEmail) {
-        // Try to find by username first
-        Optional<User> user = userRepository.findByUsernameAndIsActiveTrue(usernameOrEmail);
-        
-        // If not found by username, try email
-        if (user.isEmpty()) {
-            user = userRepository.findByEmailAndIsActiveTrue(usernameOrEmail);
-        }
-        
-        return user;
+        // One query for both; a username match wins over another user's email
+        List<User> users = userRepository.findActiveByUsernameOrEmail(usernameOrEmail);
+        return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
     }
     
     /**
      * Find user by ID
      */
+    @Transactional(readOnly = true)
     public Optional<User> findById(Long id) {
         return userRepository.findById(id);
     }
@@ -89,21 +114,34 @@ public class UserService {
      * Update user profile
      */
     public User updateUser(User user) {
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        uniquenessFilter.add(saved.getUsername(), saved.getEmail());
+        return saved;
     }
     
     /**
      * Check if username exists
      */
+    @Transactional(readOnly = true)
     public boolean usernameExists(String username) {
-        return userRepository.existsByUsername(username);
+        return uniquenessFilter.mightContainUsername(username) && userRepository.existsByUsername(username);
     }
     
     /**
      * Check if email exists
      */
+    @Transactional(readOnly = true)
     public boolean emailExists(String email) {
-        return userRepository.existsByEmail(email);
+        return uniquenessFilter.mightContainEmail(email) && userRepository.existsByEmail(email);
+    }
+    
+    /**
+     * Run a query in a transaction of its own, on the primary (a user may log in right after
+     * registering). Its connection is back in the pool on return; a bare repository call in
+     * the non-transactional scope above would keep one until the whole method ends.
+     */
+    private <T> T lookup(Supplier<T> query) {
+        return new TransactionTemplate(transactionManager).execute(status -> query.get());
     }
     
     /**
@@ -0,0 +1,152 @@
+package com.medicine.site.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filters over the usernames and emails already taken, so registering a new user
+ * does not need a database round trip per uniqueness check. A negative answer is certain;
+ * only a possible match is confirmed with a query. The filters may answer "possibly taken"
+ * for a free name, never the other way round, and the unique constraints on the users
+ * table stay the final word for registrations racing each other.
+ *
+ * Keys are lower-cased, because SQL Server compares them case-insensitively by default.
+ */
+@Component
+public class UserUniquenessFilter {
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${users.uniqueness-filter.expected-users:100000}")
+    private long expectedUsers;
+    
+    @Value("${users.uniqueness-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+    
+    private volatile Filters filters;
+    
+    private volatile boolean ready = false;
+    
+    /**
+     * Load every username and email once the application (and its sample data) is ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        ready = false;
+        // Publish the empty filters first, so users registered during the load are added too
+        Filters built = new Filters(BloomFilter.create(expectedUsers, falsePositiveRate),
+                BloomFilter.create(expectedUsers, falsePositiveRate));
+        filters = built;
+        jdbcTemplate.query("SELECT username, email FROM users", (RowCallbackHandler) rs -> {
+            built.usernames().put(key(rs.getString(1)));
+            built.emails().put(key(rs.getString(2)));
+        });
+        ready = true;
+    }
+    
+    /**
+     * Whether the username may already be taken (always true until the filters are built)
+     */
+    public boolean mightContainUsername(String username) {
+        return !ready || filters.usernames().mightContain(key(username));
+    }
+    
+    /**
+     * Whether the email may already be taken (always true until the filters are built)
+     */
+    public boolean mightContainEmail(String email) {
+        return !ready || filters.emails().mightContain(key(email));
+    }
+    
+    /**
+     * Record the username and email of a newly saved user
+     */
+    public void add(String username, String email) {
+        Filters current = filters;
+        if (current != null) {
+            current.usernames().put(key(username));
+            current.emails().put(key(email));
+        }
+    }
+    
+    private static String key(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private record Filters(BloomFilter usernames, BloomFilter emails) {}
+    
+    /**
+     * Lock-free Bloom filter over strings; bits are set with atomic OR so concurrent puts never lose a bit
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+        
+        private BloomFilter(long bitCount, int hashCount) {
+            this.words = new AtomicLongArray((int) ((bitCount + 63) >>> 6));
+            this.bitCount = (long) words.length() << 6;
+            this.hashCount = hashCount;
+        }
+        
+        // Standard sizing: m = -n ln p / (ln 2)^2 bits and k = m/n ln 2 hashes
+        static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+            long n = Math.max(expectedInsertions, 1);
+            long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+            return new BloomFilter(Math.max(bits, 64), hashes);
+        }
+        
+        void put(String key) {
+            long hash = hash(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = words.get(word);
+                } while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask));
+            }
+        }
+        
+        boolean mightContain(String key) {
+            long hash = hash(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        // 64-bit FNV-1a over the characters, finished with the MurmurHash3 mixer
+        private static long hash(String key) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                hash ^= key.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb3fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
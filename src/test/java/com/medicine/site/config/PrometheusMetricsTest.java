@@ -0,0 +1,68 @@
+package com.medicine.site.config;
+
+import com.medicine.site.dto.SessionUser;
+import com.medicine.site.entity.User;
+import com.medicine.site.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The Prometheus scrape must carry request latency per controller method, Hibernate work per
+ * request, cache region counts, connection pool gauges and BCrypt timing
+ */
+@SpringBootTest(properties = "rate-limit.enabled=false")
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class PrometheusMetricsTest {
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Test
+    void scrapeCoversRequestsHibernateCachesPoolAndHashing() throws Exception {
+        userService.registerUser(new User("metricsuser", "metrics@example.com", "metrics-password", "Metrics User"));
+        mockMvc.perform(post("/auth/login").param("usernameOrEmail", "metricsuser").param("password", "metrics-password"))
+                .andExpect(status().is3xxRedirection());
+        mockMvc.perform(get("/medicines")).andExpect(status().isOk());
+        mockMvc.perform(get("/cart").sessionAttr(SessionUser.SESSION_ATTRIBUTE, new SessionUser(1L, "metricsuser", "Metrics User")))
+                .andExpect(status().isOk());
+        
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        
+        assertHasLine(scrape, "http_server_requests_seconds_bucket{", "handler=\"MedicineController#showMedicineCatalog\"");
+        assertHasLine(scrape, "http_server_requests_seconds_count{", "handler=\"CartController#showCart\"");
+        assertHasLine(scrape, "http_server_requests_seconds_count{", "handler=\"AuthController#processLogin\"");
+        assertHasLine(scrape, "http_server_requests_statements_count{", "uri=\"/cart\"");
+        assertHasLine(scrape, "http_server_requests_sessions_bucket{", "handler=\"MedicineController#showMedicineCatalog\"");
+        assertHasLine(scrape, "hibernate_sessions_open_total{");
+        assertHasLine(scrape, "hibernate_statements_total{");
+        assertHasLine(scrape, "cache_gets_total{", "cache=\"cart-totals\"", "result=\"hit\"");
+        assertHasLine(scrape, "cache_hit_ratio{", "cache=\"medicine\"");
+        assertHasLine(scrape, "hikaricp_connections_active{", "pool=\"primary\"");
+        assertHasLine(scrape, "hikaricp_connections_pending{", "pool=\"primary\"");
+        assertHasLine(scrape, "password_hashing_seconds_count{", "operation=\"matches\"");
+        assertHasLine(scrape, "password_hashing_queue_wait_seconds_bucket{");
+    }
+    
+    private static void assertHasLine(String scrape, String prefix, String... fragments) {
+        assertTrue(Arrays.stream(scrape.split("\n"))
+                        .anyMatch(line -> line.startsWith(prefix) && Arrays.stream(fragments).allMatch(line::contains)),
+                () -> "No " + prefix + " line with " + Arrays.toString(fragments));
+    }
+}
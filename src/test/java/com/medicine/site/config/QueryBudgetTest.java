@@ -0,0 +1,176 @@
+package com.medicine.site.config;
+
+import com.medicine.site.dto.SessionUser;
+import com.medicine.site.entity.Cart;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import com.medicine.site.repository.CartRepository;
+import com.medicine.site.service.MedicineService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests run with {@code query-budget.mode=fail}: the shop's pages must stay within their
+ * {@link QueryBudget} with a multi-line cart, and a lazy-loading loop over the cart lines
+ * must be caught as an N+1 with the stack of the statement that gave it away.
+ */
+@SpringBootTest(properties = "rate-limit.enabled=false")
+@AutoConfigureMockMvc
+@Import(QueryBudgetTest.LazyCartController.class)
+class QueryBudgetTest {
+    
+    private static final long USER_ID = 5151L;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private MedicineService medicineService;
+    
+    @Autowired
+    private CartRepository cartRepository;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Test
+    void shopPagesStayWithinTheirBudgets() throws Exception {
+        List<Long> medicineIds = fillCart();
+        SessionUser user = new SessionUser(USER_ID, "budget", "Budget User");
+        entityManagerFactory.getCache().evict(Medicine.class);
+        
+        mockMvc.perform(get("/medicines").sessionAttr(SessionUser.SESSION_ATTRIBUTE, user)).andExpect(status().isOk());
+        mockMvc.perform(get("/medicines").param("category", "Budget").param("sortBy", "price")
+                .sessionAttr(SessionUser.SESSION_ATTRIBUTE, user)).andExpect(status().isOk());
+        mockMvc.perform(get("/medicines/" + medicineIds.get(0)).sessionAttr(SessionUser.SESSION_ATTRIBUTE, user))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/cart").sessionAttr(SessionUser.SESSION_ATTRIBUTE, user)).andExpect(status().isOk());
+        mockMvc.perform(post("/cart/update").sessionAttr(SessionUser.SESSION_ATTRIBUTE, user)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"" + medicineIds.get(0) + "\":2,\"" + medicineIds.get(1) + "\":3,\"" + medicineIds.get(2) + "\":4}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/cart/remove/" + medicineIds.get(3)).sessionAttr(SessionUser.SESSION_ATTRIBUTE, user))
+                .andExpect(status().is3xxRedirection());
+        mockMvc.perform(post("/cart/clear").sessionAttr(SessionUser.SESSION_ATTRIBUTE, user))
+                .andExpect(status().is3xxRedirection());
+    }
+    
+    @Test
+    void lazyLoadingLoopIsReportedAsNPlusOne() throws Exception {
+        fillCart();
+        entityManagerFactory.getCache().evict(Medicine.class);
+        
+        QueryBudgetExceededException e = assertThrows(QueryBudgetExceededException.class,
+                () -> mockMvc.perform(get("/test/lazy-cart/" + USER_ID)));
+        assertTrue(e.getMessage().contains("LazyCartController#medicineNames"), e.getMessage());
+        assertTrue(e.getMessage().contains("likely an N+1 loop"), e.getMessage());
+        assertTrue(e.getMessage().contains("from medicines"), e.getMessage());
+        // The stack sample points at the code that ran the statement
+        assertTrue(stackContains(e.getCause(), "LazyCartController"));
+    }
+    
+    @Test
+    void requestOverItsBudgetFails() throws Exception {
+        fillCart();
+        entityManagerFactory.getCache().evict(Medicine.class);
+        
+        QueryBudgetExceededException e = assertThrows(QueryBudgetExceededException.class,
+                () -> mockMvc.perform(get("/test/lazy-cart/" + USER_ID + "/budgeted")));
+        assertTrue(e.getMessage().contains("over its budget of 1"), e.getMessage());
+        assertTrue(stackContains(e.getCause(), "LazyCartController"));
+    }
+    
+    @Test
+    void counterReportsBudgetAndRepeatedStatements() {
+        RequestQueryCounter.begin(3);
+        RequestQueryCounter.budget(2);
+        RequestQueryCounter.statementPrepared("select * from cart_items where user_id=?");
+        for (int i = 0; i < 4; i++) {
+            RequestQueryCounter.statementPrepared("select * from medicines where id=?");
+        }
+        RequestQueryCounter.Counts counts = RequestQueryCounter.end();
+        
+        assertEquals(5, counts.getStatements());
+        assertTrue(counts.isOverBudget());
+        assertNotNull(counts.getOverBudgetSample());
+        assertEquals(Map.of("select * from medicines where id=?", 4), counts.getRepeatedStatements());
+        assertNotNull(counts.getRepeatSample("select * from medicines where id=?"));
+        assertFalse(counts.getRepeatedStatements().containsKey("select * from cart_items where user_id=?"));
+    }
+    
+    private List<Long> fillCart() {
+        cartRepository.deleteAll(cartRepository.findByUserId(USER_ID));
+        List<Long> medicineIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Medicine medicine = new Medicine();
+            medicine.setName("Budget Medicine " + i);
+            medicine.setGenericName("Budget Medicine");
+            medicine.setManufacturer("Test Pharma");
+            medicine.setCategory("Budget");
+            medicine.setPrice(Money.of("5.00"));
+            medicine.setStockQuantity(100);
+            Medicine saved = medicineService.saveMedicine(medicine);
+            cartRepository.save(new Cart(USER_ID, saved, 1));
+            medicineIds.add(saved.getId());
+        }
+        return medicineIds;
+    }
+    
+    private static boolean stackContains(Throwable sample, String className) {
+        for (StackTraceElement element : sample.getStackTrace()) {
+            if (element.getClassName().contains(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Reads the cart lines without fetching their medicines, then touches each medicine
+     */
+    @TestConfiguration
+    @RestController
+    static class LazyCartController {
+        
+        @Autowired
+        private CartRepository cartRepository;
+        
+        @GetMapping("/test/lazy-cart/{userId}")
+        public List<String> medicineNames(@PathVariable Long userId) {
+            List<String> names = new ArrayList<>();
+            for (Cart line : cartRepository.findByUserId(userId)) {
+                names.add(line.getMedicine().getName());
+            }
+            return names;
+        }
+        
+        @GetMapping("/test/lazy-cart/{userId}/budgeted")
+        @QueryBudget(1)
+        public List<String> budgetedMedicineNames(@PathVariable Long userId) {
+            return medicineNames(userId);
+        }
+    }
+}
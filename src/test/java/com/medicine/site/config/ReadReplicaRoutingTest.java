@@ -0,0 +1,164 @@
+package com.medicine.site.config;
+
+import com.medicine.site.dto.MedicineSuggestionDto;
+import com.medicine.site.dto.SessionUser;
+import com.medicine.site.entity.Cart;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import com.medicine.site.repository.CartRepository;
+import com.medicine.site.service.CartService;
+import com.medicine.site.service.MedicineService;
+import com.medicine.site.service.MedicineSuggestionIndex;
+import com.medicine.site.service.ReadYourWritesTracker;
+import com.medicine.site.service.StockReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two embedded databases stand in for the primary and a replica. The replica gets the schema
+ * but never any rows, so anything read from it comes back empty: read-only transactions must
+ * see the empty replica, writes and read-your-writes reads the primary.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadReplicaRoutingTest.PRIMARY_URL,
+        "datasource.replicas.urls=" + ReadReplicaRoutingTest.REPLICA_URL
+})
+@AutoConfigureMockMvc
+class ReadReplicaRoutingTest {
+    
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing_primary;MODE=MSSQLServer;DB_CLOSE_DELAY=-1";
+    
+    static final String REPLICA_URL = "jdbc:h2:mem:routing_replica;MODE=MSSQLServer;DB_CLOSE_DELAY=-1";
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private MedicineService medicineService;
+    
+    @Autowired
+    private CartService cartService;
+    
+    @Autowired
+    private CartRepository cartRepository;
+    
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+    
+    @Autowired
+    private StockReservationService stockReservationService;
+    
+    @Autowired
+    private MedicineSuggestionIndex suggestionIndex;
+    
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+    
+    // Copy the schema Hibernate created on the primary to the replica, without any data
+    @BeforeEach
+    void createReplicaSchema() {
+        if (replica.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'MEDICINES'", Integer.class) > 0) {
+            return;
+        }
+        for (String statement : jdbcTemplate.queryForList("SCRIPT NODATA", String.class)) {
+            if (!statement.startsWith("CREATE USER")) {
+                replica.execute(statement);
+            }
+        }
+    }
+    
+    @Test
+    void readOnlyTransactionsUseTheReplicaAndWritesThePrimary() {
+        Medicine medicine = createMedicine("Routed Capsule");
+        
+        assertTrue(medicineService.getMedicinesByCategory("Routing").isEmpty());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM medicines WHERE category = 'Routing' AND id = ?", Integer.class, medicine.getId()));
+        assertEquals(0, replica.queryForObject("SELECT COUNT(*) FROM medicines", Integer.class));
+    }
+    
+    @Test
+    void usersReadTheirOwnCartWritesFromThePrimary() {
+        Medicine medicine = createMedicine("Read Your Writes Tablet");
+        cartService.addToCart(7101L, medicine.getId(), 2);
+        
+        assertTrue(cartService.getUserCart(7101L).isEmpty());
+        assertTrue(readYourWritesTracker.pinIfRecentWrite(7101L));
+        try {
+            List<Cart> lines = cartService.getUserCart(7101L);
+            assertEquals(1, lines.size());
+            assertEquals(2, lines.get(0).getQuantity());
+        } finally {
+            ReadYourWritesTracker.unpinCurrentThread();
+        }
+        assertFalse(readYourWritesTracker.pinIfRecentWrite(7102L));
+    }
+    
+    @Test
+    void cartPageAfterQuickAddComesFromThePrimary() throws Exception {
+        Medicine medicine = createMedicine("Quick Add Syrup");
+        SessionUser writer = new SessionUser(7201L, "writer", "Cart Writer");
+        mockMvc.perform(post("/medicines/quick-add/" + medicine.getId()).sessionAttr(SessionUser.SESSION_ATTRIBUTE, writer))
+                .andExpect(status().is3xxRedirection());
+        mockMvc.perform(get("/cart").sessionAttr(SessionUser.SESSION_ATTRIBUTE, writer))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("itemCount", 1L));
+        
+        // A cart written behind the user's back (no recent write of theirs) is read from the replica
+        SessionUser reader = new SessionUser(7202L, "reader", "Cart Reader");
+        cartRepository.save(new Cart(reader.id(), medicine, 1));
+        mockMvc.perform(get("/cart").sessionAttr(SessionUser.SESSION_ATTRIBUTE, reader))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("itemCount", 0L));
+    }
+    
+    @Test
+    void cartTotalsReadFromTheReplicaAreNotCached() {
+        Medicine medicine = createMedicine("Uncached Totals Gel");
+        cartRepository.save(new Cart(7301L, medicine, 3));
+        
+        assertEquals(0, cartService.getCartSummary(7301L).getItemCount());
+        assertEquals(1L, cartService.getCartItemCount(7301L));
+        assertEquals(Money.of("15.00"), cartService.getTotalCartValue(7301L));
+    }
+    
+    @Test
+    void indexesAreRefreshedFromThePrimaryAfterAFlush() {
+        Medicine medicine = createMedicine("Qwrouted Flush Tablet");
+        assertTrue(stockReservationService.tryReserve(medicine.getId(), 100));
+        stockReservationService.flush();
+        
+        MedicineSuggestionDto suggestion = suggestionIndex.suggest("Qwrouted", 1).get(0);
+        assertEquals(medicine.getId(), suggestion.getId());
+        assertEquals(0, suggestion.getStockQuantity());
+    }
+    
+    private Medicine createMedicine(String name) {
+        Medicine medicine = new Medicine();
+        medicine.setName(name);
+        medicine.setGenericName(name);
+        medicine.setManufacturer("Test Pharma");
+        medicine.setCategory("Routing");
+        medicine.setPrice(Money.of("5.00"));
+        medicine.setStockQuantity(100);
+        return medicineService.saveMedicine(medicine);
+    }
+}
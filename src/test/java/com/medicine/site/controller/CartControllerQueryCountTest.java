@@ -0,0 +1,77 @@
+package com.medicine.site.controller;
+
+import com.medicine.site.dto.SessionUser;
+import com.medicine.site.entity.Cart;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import com.medicine.site.repository.CartRepository;
+import com.medicine.site.service.MedicineService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The cart page must cost one database round trip however many lines the cart has
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CartControllerQueryCountTest {
+    
+    private static final long USER_ID = 4242L;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private MedicineService medicineService;
+    
+    @Autowired
+    private CartRepository cartRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Test
+    void cartPageRunsOneQuery() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            cartRepository.save(new Cart(USER_ID, createMedicine("Cart Query Medicine " + i), 2));
+        }
+        SessionUser user = new SessionUser(USER_ID, "cartquery", "Cart Query");
+        
+        // The request's own statements, so the background stock flush does not get in
+        double before = cartPageStatements();
+        
+        mockMvc.perform(get("/cart").sessionAttr(SessionUser.SESSION_ATTRIBUTE, user))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("itemCount", 5L))
+                .andExpect(model().attribute("totalValue", Money.of("50.00")));
+        
+        assertEquals(1, cartPageStatements() - before);
+    }
+    
+    private double cartPageStatements() {
+        DistributionSummary summary = meterRegistry.find("http.server.requests.statements").tag("uri", "/cart").summary();
+        return summary != null ? summary.totalAmount() : 0;
+    }
+    
+    private Medicine createMedicine(String name) {
+        Medicine medicine = new Medicine();
+        medicine.setName(name);
+        medicine.setGenericName(name);
+        medicine.setManufacturer("Test Pharma");
+        medicine.setCategory("Test");
+        medicine.setPrice(Money.of("5.00"));
+        medicine.setStockQuantity(100);
+        return medicineService.saveMedicine(medicine);
+    }
+}
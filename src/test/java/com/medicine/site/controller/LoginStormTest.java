@@ -0,0 +1,159 @@
+package com.medicine.site.controller;
+
+import com.medicine.site.dto.PasswordHashingStats;
+import com.medicine.site.entity.User;
+import com.medicine.site.service.PasswordHashingService;
+import com.medicine.site.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A login storm against a deliberately small hashing pool: logins beyond the queue must be
+ * turned away with 503 instead of piling up, and the catalog must keep answering meanwhile,
+ * well within the time a login waits for the pool. Prints login throughput and catalog
+ * latency percentiles.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "security.password-hashing.threads=1",
+        "security.password-hashing.queue-capacity=4",
+        "rate-limit.enabled=false"
+})
+class LoginStormTest {
+    
+    private static final int LOGIN_CLIENTS = 32;
+    
+    private static final Duration STORM = Duration.ofSeconds(3);
+    
+    // Loose enough for a single-core build machine, where the one hashing thread takes half the CPU
+    private static final Duration CATALOG_P99_BOUND = Duration.ofSeconds(2);
+    
+    @LocalServerPort
+    private int port;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+    
+    private final HttpClient client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+    
+    @Test
+    void loginStormIsShedWhileTheCatalogStaysResponsive() throws Exception {
+        User user = new User();
+        user.setUsername("stormuser");
+        user.setEmail("storm@example.com");
+        user.setPassword("storm-password");
+        user.setFullName("Storm User");
+        userService.registerUser(user);
+        
+        // Warm the catalog up first, so the storm is measured against a steady page, not a cold one
+        List<Long> baseline = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            baseline.add(catalogRequest());
+        }
+        Collections.sort(baseline);
+        
+        AtomicInteger loggedIn = new AtomicInteger();
+        AtomicInteger shed = new AtomicInteger();
+        List<Long> catalogNanos = Collections.synchronizedList(new ArrayList<>());
+        long deadline = System.nanoTime() + STORM.toNanos();
+        
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < LOGIN_CLIENTS; i++) {
+            workers.add(executor.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    int status = login("stormuser", "storm-password");
+                    if (status == 302) {
+                        loggedIn.incrementAndGet();
+                    } else if (status == 503) {
+                        shed.incrementAndGet();
+                        // Impatient clients: they come back well before the Retry-After second
+                        Thread.sleep(100);
+                    }
+                }
+                return null;
+            }));
+        }
+        workers.add(executor.submit(() -> {
+            while (System.nanoTime() < deadline) {
+                catalogNanos.add(catalogRequest());
+            }
+            return null;
+        }));
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+        
+        List<Long> latencies = new ArrayList<>(catalogNanos);
+        Collections.sort(latencies);
+        PasswordHashingStats stats = passwordHashingService.getStats();
+        System.out.printf("Login storm, %d clients for %ds: %.1f logins/s, %d shed with 503; " +
+                        "catalog %d requests, p50 %.1f ms, p99 %.1f ms (%.1f ms before); hashing avg %.1f ms, queue wait avg %.1f ms%n",
+                LOGIN_CLIENTS, STORM.toSeconds(), loggedIn.get() / (double) STORM.toSeconds(), shed.get(),
+                latencies.size(), percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(baseline, 0.50),
+                stats.getAverageHashingMillis(), stats.getAverageQueueWaitMillis());
+        
+        assertTrue(loggedIn.get() > 0);
+        assertTrue(shed.get() > 0);
+        assertTrue(stats.getRejected() >= shed.get());
+        assertTrue(!latencies.isEmpty());
+        // The catalog never queues behind the hashing pool: it answers faster than a login gets a hashing thread
+        assertTrue(percentile(latencies, 0.50) < stats.getAverageQueueWaitMillis(),
+                "catalog p50 " + percentile(latencies, 0.50) + " ms, login queue wait " + stats.getAverageQueueWaitMillis() + " ms");
+        assertTrue(percentile(latencies, 0.99) < CATALOG_P99_BOUND.toMillis(),
+                "catalog p99 " + percentile(latencies, 0.99) + " ms");
+    }
+    
+    // One catalog page request; returns its latency in nanoseconds
+    private long catalogRequest() throws Exception {
+        long started = System.nanoTime();
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri("/medicines")).GET().build(),
+                HttpResponse.BodyHandlers.discarding());
+        long elapsed = System.nanoTime() - started;
+        assertEquals(200, response.statusCode());
+        return elapsed;
+    }
+    
+    private int login(String usernameOrEmail, String password) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/auth/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("usernameOrEmail=" + usernameOrEmail + "&password=" + password))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+    
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+    
+    private static double percentile(List<Long> sortedNanos, double percentile) {
+        if (sortedNanos.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.size()) - 1;
+        return sortedNanos.get(Math.max(index, 0)) / 1_000_000.0;
+    }
+}
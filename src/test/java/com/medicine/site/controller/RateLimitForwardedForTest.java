@@ -0,0 +1,48 @@
+package com.medicine.site.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Behind a proxy every request arrives from the proxy's address: anonymous clients must be
+ * limited by the address in X-Forwarded-For, not share one bucket
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "rate-limit.routes.login.capacity=3"
+})
+class RateLimitForwardedForTest {
+    
+    @LocalServerPort
+    private int port;
+    
+    private final HttpClient client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+    
+    @Test
+    void clientsBehindTheProxyAreLimitedByTheirForwardedAddress() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, login("203.0.113.7"));
+        }
+        assertEquals(429, login("203.0.113.7"));
+        assertEquals(200, login("203.0.113.8"));
+    }
+    
+    // Blank credentials fail validation and re-render the form, without any hashing
+    private int login(String forwardedFor) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/auth/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .header("X-Forwarded-For", forwardedFor)
+                .POST(HttpRequest.BodyPublishers.ofString("usernameOrEmail=&password="))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,70 @@
+package com.medicine.site.controller;
+
+import com.medicine.site.dto.SessionUser;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Rate-limited routes answer 429 once a client has used its burst, per client and per route
+ */
+@SpringBootTest(properties = {
+        "rate-limit.routes.login.capacity=3",
+        "rate-limit.routes.quick-add.capacity=2"
+})
+@AutoConfigureMockMvc
+class RateLimitTest {
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Test
+    void loginIsLimitedPerClientAddress() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(login("10.9.0.1")).andExpect(status().isOk());
+        }
+        mockMvc.perform(login("10.9.0.1"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+        
+        mockMvc.perform(login("10.9.0.2")).andExpect(status().isOk());
+        mockMvc.perform(get("/auth/login").with(request -> {
+            request.setRemoteAddr("10.9.0.1");
+            return request;
+        })).andExpect(status().isOk());
+    }
+    
+    @Test
+    void quickAddIsLimitedPerSignedInUser() throws Exception {
+        SessionUser user = new SessionUser(9001L, "ratelimited", "Rate Limited");
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/medicines/quick-add/1").sessionAttr(SessionUser.SESSION_ATTRIBUTE, user))
+                    .andExpect(status().is3xxRedirection());
+        }
+        mockMvc.perform(post("/medicines/quick-add/1").sessionAttr(SessionUser.SESSION_ATTRIBUTE, user))
+                .andExpect(status().isTooManyRequests());
+        
+        SessionUser other = new SessionUser(9002L, "another", "Another User");
+        mockMvc.perform(post("/medicines/quick-add/1").sessionAttr(SessionUser.SESSION_ATTRIBUTE, other))
+                .andExpect(status().is3xxRedirection());
+    }
+    
+    // Blank credentials fail validation and re-render the form, without any hashing
+    private static MockHttpServletRequestBuilder login(String address) {
+        return post("/auth/login")
+                .param("usernameOrEmail", "")
+                .param("password", "")
+                .with(request -> {
+                    request.setRemoteAddr(address);
+                    return request;
+                });
+    }
+}
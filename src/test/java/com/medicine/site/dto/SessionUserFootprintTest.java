@@ -0,0 +1,112 @@
+package com.medicine.site.dto;
+
+import com.medicine.site.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.ref.Reference;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Heap held per signed-in session: the full User entity (plus the userId and username
+ * attributes stored next to it) against the compact {@link SessionUser} principal.
+ * Prints the bytes per session and the resulting sessions per GB of heap, and bounds the
+ * principal's serialized size.
+ */
+class SessionUserFootprintTest {
+    
+    private static final int SESSIONS = 100_000;
+    
+    private static final long GIGABYTE = 1L << 30;
+    
+    // What one principal may add to a persisted or replicated session
+    private static final int MAX_SERIALIZED_BYTES = 128;
+    
+    @Test
+    void sessionPrincipalIsAFractionOfTheEntity() throws Exception {
+        long entityBytes = bytesPerSession(i -> {
+            User user = user(i);
+            Map<String, Object> attributes = new ConcurrentHashMap<>();
+            attributes.put("user", user);
+            attributes.put("userId", user.getId());
+            attributes.put("username", user.getUsername());
+            return attributes;
+        });
+        long principalBytes = bytesPerSession(i -> {
+            Map<String, Object> attributes = new ConcurrentHashMap<>();
+            attributes.put(SessionUser.SESSION_ATTRIBUTE, SessionUser.of(user(i)));
+            return attributes;
+        });
+        
+        SessionUser principal = SessionUser.of(user(1));
+        byte[] serialized = serialize(principal);
+        assertEquals(principal, deserialize(serialized));
+        SessionUser withoutName = new SessionUser(2L, "user2", null);
+        assertEquals(withoutName, deserialize(serialize(withoutName)));
+        
+        System.out.printf("Session attributes: User entity %d bytes (%,d sessions/GB), SessionUser %d bytes " +
+                        "(%,d sessions/GB); SessionUser serializes to %d bytes, the entity is not Serializable%n",
+                entityBytes, GIGABYTE / entityBytes, principalBytes, GIGABYTE / principalBytes, serialized.length);
+        assertTrue(principalBytes < entityBytes);
+        assertTrue(serialized.length <= MAX_SERIALIZED_BYTES, serialized.length + " bytes");
+    }
+    
+    private static byte[] serialize(Object value) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static Object deserialize(byte[] bytes) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+    
+    private static long bytesPerSession(IntFunction<Object> session) {
+        long before = usedHeap();
+        Object[] sessions = new Object[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            sessions[i] = session.apply(i);
+        }
+        long after = usedHeap();
+        Reference.reachabilityFence(sessions);
+        return (after - before) / SESSIONS;
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    // A user as loaded at login, every field filled in as on the registration form
+    private static User user(int i) {
+        User user = new User("user" + i, "user" + i + "@example.com",
+                "$2a$10$" + "N9qo8uLOickgx2ZMRZoMyeIjZAgcfl7p92ldGxad68LJZdL17lhW" + (i % 10),
+                "Customer Number " + i);
+        user.setId((long) i);
+        user.setPhoneNumber("+1-555-" + (1000000 + i));
+        user.setAddress(i + " Pharmacy Street, Apartment " + (i % 100));
+        user.setCity("Springfield");
+        user.setState("Illinois");
+        user.setZipCode(String.valueOf(60000 + i % 1000));
+        user.setIsActive(true);
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+        return user;
+    }
+}
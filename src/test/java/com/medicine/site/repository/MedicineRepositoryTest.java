@@ -0,0 +1,89 @@
+package com.medicine.site.repository;
+
+import com.medicine.site.config.RequestQueryCounter;
+import com.medicine.site.dto.MedicineSummary;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Catalog list queries: every filter and the summary columns come from one select, and the
+ * count only runs when the page alone cannot tell the total
+ */
+@SpringBootTest
+class MedicineRepositoryTest {
+    
+    @Autowired
+    private MedicineRepository medicineRepository;
+    
+    @Test
+    void summariesCarryTheListColumnsAndADescriptionTeaser() {
+        Medicine medicine = medicine("Summary Capsule", "Repository Summary", 12);
+        medicine.setDescription("x".repeat(MedicineSummary.SHORT_DESCRIPTION_LENGTH) + " and the rest of a long leaflet");
+        medicine.setPrice(Money.of("12.34"));
+        medicine.setRequiresPrescription(true);
+        Medicine saved = medicineRepository.save(medicine);
+        
+        Page<MedicineSummary> page = medicineRepository.findSummaries(
+                MedicineSpecifications.inCategory("Repository Summary"), PageRequest.of(0, 10));
+        
+        assertEquals(1, page.getTotalElements());
+        MedicineSummary summary = page.getContent().get(0);
+        assertEquals(saved.getId(), summary.getId());
+        assertEquals("Summary Capsule", summary.getName());
+        assertEquals("Generic Summary Capsule", summary.getGenericName());
+        assertEquals("Test Pharma", summary.getManufacturer());
+        assertEquals("Repository Summary", summary.getCategory());
+        assertEquals("x".repeat(MedicineSummary.SHORT_DESCRIPTION_LENGTH), summary.getShortDescription());
+        assertEquals(Money.of("12.34"), summary.getPrice());
+        assertEquals(12, summary.getStockQuantity());
+        assertTrue(summary.getRequiresPrescription());
+        assertEquals(saved.getCreatedAt().truncatedTo(ChronoUnit.MILLIS), summary.getCreatedAt().truncatedTo(ChronoUnit.MILLIS));
+    }
+    
+    @Test
+    void countIsSkippedWhenThePageTellsTheTotal() {
+        String category = "Repository Count";
+        for (int i = 0; i < 5; i++) {
+            medicineRepository.save(medicine("Count Tablet " + i, category, 10));
+        }
+        // Out of stock, so the combined filter leaves five
+        medicineRepository.save(medicine("Count Tablet Empty", category, 0));
+        Specification<Medicine> specification = MedicineSpecifications.isActive()
+                .and(MedicineSpecifications.inCategory(category))
+                .and(MedicineSpecifications.inStock());
+        
+        // A full page cannot tell whether more rows follow: select and count
+        assertPage(specification, PageRequest.of(0, 2), 2, 5, 2);
+        // The last, partial page ends the result: its offset plus its rows is the total
+        assertPage(specification, PageRequest.of(2, 2), 1, 5, 1);
+        // So does a first page that is not full
+        assertPage(specification, PageRequest.of(0, 10), 5, 5, 1);
+        // An empty page past the end cannot tell where the result ended
+        assertPage(specification, PageRequest.of(5, 2), 0, 5, 2);
+    }
+    
+    private void assertPage(Specification<Medicine> specification, PageRequest pageable, int rows, long total,
+                            int statements) {
+        RequestQueryCounter.begin(0);
+        Page<MedicineSummary> page = medicineRepository.findSummaries(specification, pageable.withSort(Sort.by("id")));
+        assertEquals(statements, RequestQueryCounter.end().getStatements(), pageable.toString());
+        assertEquals(rows, page.getNumberOfElements(), pageable.toString());
+        assertEquals(total, page.getTotalElements(), pageable.toString());
+    }
+    
+    private static Medicine medicine(String name, String category, int stock) {
+        return new Medicine(name, "Generic " + name, "Test Pharma", category, null, Money.of("5.00"), stock);
+    }
+}
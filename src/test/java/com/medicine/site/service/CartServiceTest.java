@@ -0,0 +1,237 @@
+package com.medicine.site.service;
+
+import com.medicine.site.config.RequestQueryCounter;
+import com.medicine.site.dto.CartUpdateResult;
+import com.medicine.site.dto.MedicineSuggestionDto;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import com.medicine.site.repository.CartRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class CartServiceTest {
+    
+    @Autowired
+    private CartService cartService;
+    
+    @Autowired
+    private MedicineService medicineService;
+    
+    @Autowired
+    private CartRepository cartRepository;
+    
+    @Autowired
+    private StockReservationService stockReservationService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Test
+    void addToCartInsertsThenIncrementsTheLine() {
+        Long medicineId = createMedicine("Upsert Tablet", 10).getId();
+        
+        assertEquals(2, cartService.addToCart(501L, medicineId, 2));
+        assertEquals(5, cartService.addToCart(501L, medicineId, 3));
+        
+        assertEquals(Money.of("25.00"), cartRepository.findByUserIdAndMedicineId(501L, medicineId).orElseThrow().getTotalPrice());
+        assertThrows(RuntimeException.class, () -> cartService.addToCart(501L, medicineId, 6));
+    }
+    
+    @Test
+    void concurrentQuickAddsEndUpInOneLine() throws Exception {
+        Long medicineId = createMedicine("Double Click Syrup", 100).getId();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> clicks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            clicks.add(executor.submit(() -> {
+                start.await();
+                return cartService.addToCart(502L, medicineId, 1);
+            }));
+        }
+        start.countDown();
+        for (Future<?> click : clicks) {
+            click.get();
+        }
+        executor.shutdown();
+        
+        assertEquals(1, cartRepository.findByUserId(502L).size());
+        assertEquals(8, cartRepository.findByUserIdAndMedicineId(502L, medicineId).orElseThrow().getQuantity());
+    }
+    
+    @Test
+    void cartTotalsFollowEveryChangeWithoutQuerying() {
+        Long first = createMedicine("Badge Tablet", 10).getId();
+        Long second = createMedicine("Badge Syrup", 10).getId();
+        assertEquals(0L, cartService.getCartItemCount(503L));
+        
+        cartService.addToCart(503L, first, 2);
+        cartService.addToCart(503L, second, 1);
+        cartService.addToCart(503L, first, 1);
+        cartService.updateCartItemQuantity(503L, second, 4);
+        cartService.removeFromCart(503L, first);
+        
+        // Counted on this thread only, so the background stock flush does not get in
+        RequestQueryCounter.begin(0);
+        assertEquals(1L, cartService.getCartItemCount(503L));
+        assertEquals(Money.of("20.00"), cartService.getTotalCartValue(503L));
+        assertEquals(0, RequestQueryCounter.end().getStatements());
+        
+        cartService.clearCart(503L);
+        assertEquals(0L, cartService.getCartItemCount(503L));
+        assertEquals(0, cartService.getTotalCartValue(503L).signum());
+    }
+    
+    @Test
+    void batchUpdateAppliesAllLinesOrNone() {
+        Long first = createMedicine("Batch Tablet", 10).getId();
+        Long second = createMedicine("Batch Syrup", 10).getId();
+        Long third = createMedicine("Batch Capsule", 10).getId();
+        cartService.addToCart(504L, first, 1);
+        cartService.addToCart(504L, second, 5);
+        cartService.addToCart(504L, third, 2);
+        
+        assertThrows(RuntimeException.class, () -> cartService.updateCartQuantities(504L, Map.of(first, 3, second, 11)));
+        assertEquals(1, cartRepository.findByUserIdAndMedicineId(504L, first).orElseThrow().getQuantity());
+        
+        CartUpdateResult result = cartService.updateCartQuantities(504L, Map.of(first, 3, second, 2, third, 0));
+        assertEquals(2, result.getUpdatedLines());
+        assertEquals(1, result.getRemovedLines());
+        assertEquals(2L, result.getItemCount());
+        assertEquals(Money.of("25.00"), result.getTotalValue());
+        assertEquals(3, cartRepository.findByUserIdAndMedicineId(504L, first).orElseThrow().getQuantity());
+        assertEquals(Money.of("10.00"), cartRepository.findByUserIdAndMedicineId(504L, second).orElseThrow().getTotalPrice());
+        assertEquals(2L, cartService.getCartItemCount(504L));
+    }
+    
+    @Test
+    void suggestionsRankByCartLinesNotQuantity() {
+        Long bulk = createMedicine("Qzpopular Bulk Tablet", 50).getId();
+        Long popular = createMedicine("Qzpopular Everyday Tablet", 50).getId();
+        cartService.addToCart(508L, bulk, 10);
+        cartService.addToCart(508L, bulk, 10);
+        cartService.addToCart(508L, popular, 1);
+        cartService.addToCart(509L, popular, 1);
+        
+        // Two lines of one each outrank one line of twenty, as they would after a restart
+        assertEquals(List.of(popular, bulk),
+                medicineService.suggestMedicines("qzpopular", 2).stream().map(MedicineSuggestionDto::getId).toList());
+    }
+    
+    @Test
+    void abandonedLinesExpireAndGiveTheirStockBack() {
+        Long medicineId = createMedicine("Abandoned Tablet", 10).getId();
+        cartService.addToCart(506L, medicineId, 3);
+        cartService.addToCart(507L, medicineId, 2);
+        assertEquals(1L, cartService.getCartItemCount(506L));
+        jdbcTemplate.update("UPDATE cart_items SET updated_at = ? WHERE user_id = 506",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(2)));
+        
+        assertTrue(cartService.expireAbandonedLines() >= 1);
+        
+        assertTrue(cartRepository.findByUserIdAndMedicineId(506L, medicineId).isEmpty());
+        assertEquals(2, cartRepository.findByUserIdAndMedicineId(507L, medicineId).orElseThrow().getQuantity());
+        assertEquals(8, stockReservationService.getAvailable(medicineId));
+        assertEquals(0L, cartService.getCartItemCount(506L));
+    }
+    
+    @Test
+    void concurrentRemovesAndQuantityChangesReleaseStockExactlyOnce() throws Exception {
+        Long medicineId = createMedicine("Double Remove Tablet", 100).getId();
+        for (int round = 0; round < 20; round++) {
+            cartService.addToCart(508L, medicineId, 5);
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(6);
+            List<Future<?>> requests = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                int request = i;
+                requests.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        switch (request % 3) {
+                            case 0 -> cartService.removeFromCart(508L, medicineId);
+                            case 1 -> cartService.updateCartItemQuantity(508L, medicineId, 0);
+                            default -> cartService.updateCartQuantities(508L, Map.of(medicineId, 3));
+                        }
+                    } catch (RuntimeException e) {
+                        // The line was already gone or changed underneath: nothing was written
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> request : requests) {
+                request.get();
+            }
+            executor.shutdown();
+            
+            int inCart = cartRepository.findByUserIdAndMedicineId(508L, medicineId).map(line -> line.getQuantity()).orElse(0);
+            assertEquals(100 - inCart, stockReservationService.getAvailable(medicineId));
+            cartService.clearCart(508L);
+            assertEquals(100, stockReservationService.getAvailable(medicineId));
+        }
+    }
+    
+    @Test
+    void benchmarkBatchUpdateAgainstPerLineUpdates() {
+        int lines = 20;
+        int rounds = 25;
+        List<Long> medicineIds = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            Long medicineId = createMedicine("Batch Benchmark " + i, 1_000).getId();
+            cartService.addToCart(505L, medicineId, 1);
+            medicineIds.add(medicineId);
+        }
+        
+        long started = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (Long medicineId : medicineIds) {
+                cartService.updateCartItemQuantity(505L, medicineId, 2 + round % 2);
+            }
+        }
+        long perLineNanos = System.nanoTime() - started;
+        
+        started = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            Map<Long, Integer> quantities = new HashMap<>();
+            for (Long medicineId : medicineIds) {
+                quantities.put(medicineId, 4 + round % 2);
+            }
+            cartService.updateCartQuantities(505L, quantities);
+        }
+        long batchNanos = System.nanoTime() - started;
+        
+        System.out.printf("Cart update of %d lines: per-line %.2f ms/cart, batch %.2f ms/cart%n",
+                lines, perLineNanos / 1_000_000.0 / rounds, batchNanos / 1_000_000.0 / rounds);
+        assertEquals(4, cartRepository.findByUserIdAndMedicineId(505L, medicineIds.get(0)).orElseThrow().getQuantity());
+    }
+    
+    private Medicine createMedicine(String name, int stock) {
+        Medicine medicine = new Medicine();
+        medicine.setName(name);
+        medicine.setGenericName(name);
+        medicine.setManufacturer("Test Pharma");
+        medicine.setCategory("Test");
+        medicine.setPrice(Money.of("5.00"));
+        medicine.setStockQuantity(stock);
+        return medicineService.saveMedicine(medicine);
+    }
+}
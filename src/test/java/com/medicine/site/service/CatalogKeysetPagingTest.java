@@ -0,0 +1,132 @@
+package com.medicine.site.service;
+
+import com.medicine.site.dto.CatalogFilter;
+import com.medicine.site.dto.CatalogWindow;
+import com.medicine.site.dto.MedicineSummary;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Keyset paging must visit every row exactly once, forward and backward, even when rows
+ * share or lack (NULL) the sort key; a malformed cursor is rejected with 400
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CatalogKeysetPagingTest {
+    
+    private static final String CATEGORY = "Keyset Nulls";
+    
+    @Autowired
+    private MedicineService medicineService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Test
+    void nullSortKeysArePagedLikeAnyOtherValue() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ids.add(createMedicine("Keyset Null " + i).getId());
+        }
+        // Three rows without a creation time, two sharing one
+        jdbcTemplate.update("UPDATE medicines SET created_at = NULL WHERE id IN (?, ?, ?)", ids.get(1), ids.get(3), ids.get(5));
+        jdbcTemplate.update("UPDATE medicines SET created_at = (SELECT created_at FROM medicines WHERE id = ?) WHERE id = ?",
+                ids.get(0), ids.get(2));
+        
+        for (Sort sort : List.of(Sort.by("createdAt").ascending(), Sort.by("createdAt").descending())) {
+            List<Long> forward = new ArrayList<>();
+            CatalogWindow<MedicineSummary> window = medicineService.scrollCatalog(filter(), null, 2, sort, false);
+            while (true) {
+                window.getContent().forEach(summary -> forward.add(summary.getId()));
+                if (!window.hasNext()) {
+                    break;
+                }
+                window = medicineService.scrollCatalog(filter(), window.getNextCursor(), 2, sort, false);
+            }
+            assertEquals(ids.size(), forward.size(), sort.toString());
+            assertEquals(ids.stream().sorted().toList(), forward.stream().sorted().toList(), sort.toString());
+            
+            // Walking back from the last window yields the same rows in reverse
+            List<Long> backward = new ArrayList<>(window.getContent().stream().map(MedicineSummary::getId).toList());
+            Collections.reverse(backward);
+            String cursor = window.getPreviousCursor();
+            while (cursor != null) {
+                CatalogWindow<MedicineSummary> previous = medicineService.scrollCatalog(filter(), cursor, 2, sort, false);
+                List<Long> page = new ArrayList<>(previous.getContent().stream().map(MedicineSummary::getId).toList());
+                Collections.reverse(page);
+                backward.addAll(page);
+                cursor = previous.hasPrevious() ? previous.getPreviousCursor() : null;
+            }
+            Collections.reverse(backward);
+            assertEquals(forward, backward, sort.toString());
+        }
+    }
+    
+    @Test
+    void malformedCursorsAreRejected() throws Exception {
+        Sort sort = Sort.by("createdAt").ascending();
+        List<String> cursors = List.of(
+                "not base64!",
+                encode("F|createdAt"),
+                cursor("createdAt:T:" + encode("yesterday"), "id:L:" + encode("5")),
+                cursor("createdAt:T:" + encode("2024-01-01T00:00"), "id:L:" + encode("five")),
+                // Well-formed, but typed or keyed for another sort
+                cursor("createdAt:L:" + encode("5"), "id:L:" + encode("5")),
+                cursor("createdAt:T:" + encode("2024-01-01T00:00"), "id:S:" + encode("5")),
+                cursor("name:S:" + encode("Aspirin"), "id:L:" + encode("5")),
+                cursor("id:L:" + encode("5")));
+        for (String cursor : cursors) {
+            assertThrows(InvalidCatalogCursorException.class,
+                    () -> medicineService.scrollCatalog(filter(), cursor, 2, sort, false), cursor);
+            mockMvc.perform(get("/medicines").param("cursor", cursor).param("sortBy", "createdAt"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+    
+    // A forward cursor with the given "property:type:value" keys
+    private static String cursor(String... keys) {
+        return encode("F|" + String.join("|", keys));
+    }
+    
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static CatalogFilter filter() {
+        CatalogFilter filter = new CatalogFilter();
+        filter.setCategory(CATEGORY);
+        return filter;
+    }
+    
+    private Medicine createMedicine(String name) {
+        Medicine medicine = new Medicine();
+        medicine.setName(name);
+        medicine.setGenericName(name);
+        medicine.setManufacturer("Test Pharma");
+        medicine.setCategory(CATEGORY);
+        medicine.setPrice(Money.of("5.00"));
+        medicine.setStockQuantity(10);
+        return medicineService.saveMedicine(medicine);
+    }
+}
@@ -0,0 +1,65 @@
+package com.medicine.site.service;
+
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stock and prices are written in SQL, past Hibernate; each such write must evict the cached
+ * Medicine, so a read that would otherwise hit the old cached copy sees the new value
+ */
+@SpringBootTest
+class MedicineCacheTest {
+    
+    @Autowired
+    private MedicineService medicineService;
+    
+    @Autowired
+    private StockReservationService stockReservationService;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Test
+    void stockAndPriceWritesEvictTheCachedMedicine() {
+        Long medicineId = createMedicine("Cached Tablet").getId();
+        loadIntoCache(medicineId);
+        medicineService.updateStockQuantity(medicineId, 7);
+        assertEquals(7, medicineService.getMedicineById(medicineId).orElseThrow().getStockQuantity());
+        
+        loadIntoCache(medicineId);
+        medicineService.reduceStockQuantity(medicineId, 2);
+        assertEquals(5, medicineService.getMedicineById(medicineId).orElseThrow().getStockQuantity());
+        
+        loadIntoCache(medicineId);
+        medicineService.updatePrice(medicineId, Money.of("6.50"));
+        assertEquals(Money.of("6.50"), medicineService.getMedicineById(medicineId).orElseThrow().getPrice());
+        
+        loadIntoCache(medicineId);
+        assertTrue(stockReservationService.tryReserve(medicineId, 1));
+        stockReservationService.flush();
+        assertEquals(4, medicineService.getMedicineById(medicineId).orElseThrow().getStockQuantity());
+    }
+    
+    private void loadIntoCache(Long medicineId) {
+        medicineService.getMedicineById(medicineId);
+        assertTrue(entityManagerFactory.getCache().contains(Medicine.class, medicineId));
+    }
+    
+    private Medicine createMedicine(String name) {
+        Medicine medicine = new Medicine();
+        medicine.setName(name);
+        medicine.setGenericName(name);
+        medicine.setManufacturer("Test Pharma");
+        medicine.setCategory("Test");
+        medicine.setPrice(Money.of("5.00"));
+        medicine.setStockQuantity(10);
+        return medicineService.saveMedicine(medicine);
+    }
+}
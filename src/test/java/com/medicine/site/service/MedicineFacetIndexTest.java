@@ -0,0 +1,76 @@
+package com.medicine.site.service;
+
+import com.medicine.site.dto.CatalogFacets;
+import com.medicine.site.dto.CatalogFacets.FacetCount;
+import com.medicine.site.dto.CatalogFilter;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Facet counts must cover the search term as well as the selected filters, and a price
+ * bucket's link must select exactly the medicines the bucket counts
+ */
+class MedicineFacetIndexTest {
+    
+    @Test
+    void countsAreLimitedToTheSearchMatches() {
+        MedicineFacetIndex index = new MedicineFacetIndex();
+        index.rebuild(List.of(medicine(1L, "Pain Relief", 10), medicine(2L, "Pain Relief", 0),
+                medicine(3L, "Allergy", 10)));
+        CatalogFilter filter = new CatalogFilter();
+        filter.setSearch("para");
+        
+        CatalogFacets facets = index.facets(filter, List.of(1L, 2L));
+        
+        assertEquals(2, facets.getTotal());
+        assertEquals(0, count(facets.getCategories(), "Allergy"));
+        assertEquals(2, count(facets.getCategories(), "Pain Relief"));
+        assertEquals(1, count(facets.getStock(), "in-stock"));
+        assertEquals(3, index.facets(new CatalogFilter(), null).getTotal());
+    }
+    
+    @Test
+    void priceBucketLinksSelectExactlyTheCountedMedicines() {
+        MedicineFacetIndex index = new MedicineFacetIndex();
+        index.rebuild(List.of(medicine(1L, "9.99"), medicine(2L, "10.00"), medicine(3L, "24.99"),
+                medicine(4L, "25.00")));
+        
+        for (FacetCount bucket : index.facets(new CatalogFilter(), null).getPriceRanges()) {
+            CatalogFilter filter = new CatalogFilter();
+            filter.setMinPrice(new BigDecimal(bucket.getValue().substring(0, bucket.getValue().indexOf('-'))));
+            String max = bucket.getValue().substring(bucket.getValue().indexOf('-') + 1);
+            filter.setMaxPrice(max.isEmpty() ? null : new BigDecimal(max));
+            
+            CatalogFacets selected = index.facets(filter, null);
+            assertEquals(bucket.getCount(), selected.getTotal(), bucket.getValue());
+            assertEquals(List.of(bucket.getValue()), selected.getPriceRanges().stream()
+                    .filter(FacetCount::isSelected).map(FacetCount::getValue).toList());
+        }
+        assertEquals(2, count(index.facets(new CatalogFilter(), null).getPriceRanges(), "10-24.99"));
+    }
+    
+    private static long count(List<FacetCount> counts, String value) {
+        return counts.stream().filter(count -> count.getValue().equals(value)).findFirst().orElseThrow().getCount();
+    }
+    
+    private static Medicine medicine(Long id, String category, int stock) {
+        return medicine(id, category, stock, "5.00");
+    }
+    
+    private static Medicine medicine(Long id, String price) {
+        return medicine(id, "Pain Relief", 10, price);
+    }
+    
+    private static Medicine medicine(Long id, String category, int stock, String price) {
+        Medicine medicine = new Medicine("Medicine " + id, "Generic " + id, "Test Pharma", category, null,
+                Money.of(price), stock);
+        medicine.setId(id);
+        return medicine;
+    }
+}
@@ -0,0 +1,129 @@
+package com.medicine.site.service;
+
+import com.medicine.site.entity.Cart;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import com.medicine.site.repository.CartRepository;
+import com.medicine.site.repository.MedicineRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class MedicinePriceUpdateTest {
+    
+    @Autowired
+    private MedicineService medicineService;
+    
+    @Autowired
+    private CartService cartService;
+    
+    @Autowired
+    private MedicineRepository medicineRepository;
+    
+    @Autowired
+    private CartRepository cartRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Test
+    void priceChangeRepricesOpenCartLines() {
+        Long medicineId = createMedicine("Reprice Tablet").getId();
+        cartService.addToCart(601L, medicineId, 3);
+        cartService.addToCart(602L, medicineId, 1);
+        assertEquals(Money.of("15.00"), cartService.getTotalCartValue(601L));
+        
+        medicineService.updatePrice(medicineId, Money.of("7.25"));
+        
+        assertEquals(Money.of("7.25"), medicineRepository.findById(medicineId).orElseThrow().getPrice());
+        Cart line = cartRepository.findByUserIdAndMedicineId(601L, medicineId).orElseThrow();
+        assertEquals(Money.of("7.25"), line.getUnitPrice());
+        assertEquals(Money.of("21.75"), line.getTotalPrice());
+        assertEquals(Money.of("21.75"), cartService.getTotalCartValue(601L));
+        assertEquals(Money.of("7.25"), cartService.getTotalCartValue(602L));
+    }
+    
+    @Test
+    void priceListUpdatesEveryListedMedicineAndSkipsUnknownIds() {
+        Long first = createMedicine("Price List Syrup").getId();
+        Long second = createMedicine("Price List Drops").getId();
+        cartService.addToCart(603L, first, 2);
+        cartService.addToCart(603L, second, 1);
+        
+        Map<Long, Money> prices = new HashMap<>();
+        prices.put(first, Money.of("1.50"));
+        prices.put(second, Money.of("10.00"));
+        prices.put(999_999L, Money.of("3.00"));
+        
+        assertEquals(2, medicineService.updatePrices(prices));
+        assertEquals(Money.of("13.00"), cartService.getTotalCartValue(603L));
+        assertFalse(medicineService.updatePrice(999_999L, Money.of("3.00")));
+        assertThrows(RuntimeException.class, () -> medicineService.updatePrice(first, Money.ZERO));
+    }
+    
+    @Test
+    void updateMedicineRepricesOpenCartLines() {
+        Medicine medicine = createMedicine("Edited Ointment");
+        cartService.addToCart(604L, medicine.getId(), 4);
+        
+        Medicine edited = medicineRepository.findById(medicine.getId()).orElseThrow();
+        edited.setPrice(Money.of("2.00"));
+        medicineService.updateMedicine(edited);
+        
+        assertEquals(Money.of("8.00"), cartRepository.findByUserIdAndMedicineId(604L, medicine.getId()).orElseThrow().getTotalPrice());
+        assertEquals(Money.of("8.00"), cartService.getTotalCartValue(604L));
+    }
+    
+    @Test
+    void repriceRefreshesOnlyTheAffectedLoadedLines() {
+        Long repriced = createMedicine("Loaded Reprice Tablet").getId();
+        Long untouched = createMedicine("Loaded Untouched Tablet").getId();
+        cartService.addToCart(605L, repriced, 2);
+        cartService.addToCart(605L, untouched, 1);
+        // A line written without a unit price must be repriced as well
+        jdbcTemplate.update("UPDATE cart_items SET unit_price = NULL WHERE user_id = 605 AND medicine_id = ?", repriced);
+        
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Cart repricedLine = cartRepository.findByUserIdAndMedicineId(605L, repriced).orElseThrow();
+            Cart untouchedLine = cartRepository.findByUserIdAndMedicineId(605L, untouched).orElseThrow();
+            
+            medicineService.updatePrice(repriced, Money.of("6.00"));
+            
+            assertTrue(entityManager.contains(untouchedLine));
+            assertEquals(Money.of("6.00"), repricedLine.getUnitPrice());
+            assertEquals(Money.of("12.00"), repricedLine.getTotalPrice());
+        });
+        assertEquals(Money.of("17.00"), cartService.getTotalCartValue(605L));
+    }
+    
+    private Medicine createMedicine(String name) {
+        Medicine medicine = new Medicine();
+        medicine.setName(name);
+        medicine.setGenericName(name);
+        medicine.setManufacturer("Test Pharma");
+        medicine.setCategory("Test");
+        medicine.setPrice(Money.of("5.00"));
+        medicine.setStockQuantity(100);
+        return medicineService.saveMedicine(medicine);
+    }
+}
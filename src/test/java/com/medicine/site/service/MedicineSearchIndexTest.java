@@ -0,0 +1,65 @@
+package com.medicine.site.service;
+
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Updating or removing medicines must reuse their slots instead of leaving holes behind, and
+ * results must come in the database's order
+ */
+class MedicineSearchIndexTest {
+    
+    @Test
+    void repeatedUpdatesKeepTheSlotCountConstant() {
+        MedicineSearchIndex index = new MedicineSearchIndex();
+        index.rebuild(List.of(medicine(1L, "Paracetamol"), medicine(2L, "Ibuprofen")));
+        
+        for (int i = 0; i < 1_000; i++) {
+            index.index(medicine(1L, "Paracetamol " + i));
+        }
+        
+        assertEquals(2, index.slotCount());
+        assertEquals(2, index.size());
+        assertEquals(List.of(1L), index.search("paracetamol 999"));
+        assertEquals(List.of(), index.search("paracetamol 998"));
+    }
+    
+    @Test
+    void removedSlotsAreReused() {
+        MedicineSearchIndex index = new MedicineSearchIndex();
+        index.rebuild(List.of(medicine(1L, "Paracetamol"), medicine(2L, "Ibuprofen")));
+        
+        index.remove(1L);
+        index.index(medicine(3L, "Cetirizine"));
+        
+        assertEquals(2, index.slotCount());
+        assertEquals(List.of(), index.search("paracetamol"));
+        assertEquals(List.of(3L), index.search("cetiri"));
+        assertEquals(List.of(2L), index.search("ibu"));
+    }
+    
+    @Test
+    void namesSortIgnoringCaseLikeTheDatabase() {
+        MedicineSearchIndex index = new MedicineSearchIndex();
+        index.rebuild(List.of(medicine(1L, "aspirin beta"), medicine(2L, "Aspirin Alpha"),
+                medicine(3L, "aspirin gamma"), medicine(4L, "ASPIRIN delta")));
+        
+        assertEquals(List.of(2L, 1L, 4L, 3L),
+                index.search("aspirin", PageRequest.of(0, 10, Sort.by("name").ascending())).ids());
+        assertEquals(List.of(3L, 4L, 1L, 2L),
+                index.search("aspirin", PageRequest.of(0, 10, Sort.by("name").descending())).ids());
+    }
+    
+    private static Medicine medicine(Long id, String name) {
+        Medicine medicine = new Medicine(name, name, "Test Pharma", "Test", null, Money.of("5.00"), 10);
+        medicine.setId(id);
+        return medicine;
+    }
+}
@@ -0,0 +1,78 @@
+package com.medicine.site.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Token buckets must allow the burst, refill at the configured rate, forget idle clients and
+ * stay within their memory ceiling. Prints the limiter's cost per request.
+ */
+class RateLimiterTest {
+    
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    
+    @Test
+    void burstIsAllowedThenRefilledAtTheSustainedRate() {
+        RateLimiter limiter = limiter(1000);
+        long now = 0;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("login", 5, 60, "10.0.0.1", now));
+        }
+        long wait = limiter.tryAcquire("login", 5, 60, "10.0.0.1", now);
+        assertEquals(SECOND, wait);
+        assertEquals(0, limiter.tryAcquire("login", 5, 60, "10.0.0.2", now));
+        assertEquals(0, limiter.tryAcquire("register", 5, 60, "10.0.0.1", now));
+        
+        now += SECOND;
+        assertEquals(0, limiter.tryAcquire("login", 5, 60, "10.0.0.1", now));
+        assertTrue(limiter.tryAcquire("login", 5, 60, "10.0.0.1", now) > 0);
+    }
+    
+    @Test
+    void idleBucketsAreDroppedAndTheTableStaysBounded() {
+        RateLimiter limiter = limiter(4096);
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("quick-add", 10, 60, "user:" + i, 0);
+        }
+        assertTrue(limiter.getClientCount("quick-add") <= 4096);
+        
+        // Ten seconds later every bucket is full again, so later requests sweep the old ones out
+        for (int i = 0; i < 5_000; i++) {
+            limiter.tryAcquire("quick-add", 10, 60, "late:" + (i % 1_000), 10 * SECOND);
+        }
+        assertEquals(1_000, limiter.getClientCount("quick-add"));
+    }
+    
+    @Test
+    void limiterCostsWellUnderAMicrosecondPerRequest() {
+        RateLimiter limiter = limiter(100_000);
+        String[] clients = new String[10_000];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = "10.1." + (i >> 8) + "." + (i & 255);
+        }
+        int requests = 2_000_000;
+        long elapsed = 0;
+        for (int round = 0; round < 3; round++) {
+            long started = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                limiter.tryAcquire("login", 10, 600, clients[i % clients.length]);
+            }
+            elapsed = System.nanoTime() - started;
+        }
+        double nanosPerRequest = elapsed / (double) requests;
+        System.out.printf("Rate limiter: %.0f ns per request over %,d clients%n", nanosPerRequest, clients.length);
+        assertTrue(nanosPerRequest < 1_000);
+    }
+    
+    private static RateLimiter limiter(int maxClients) {
+        RateLimiter limiter = new RateLimiter();
+        ReflectionTestUtils.setField(limiter, "maxClients", maxClients);
+        ReflectionTestUtils.setField(limiter, "stripes", 16);
+        return limiter;
+    }
+}
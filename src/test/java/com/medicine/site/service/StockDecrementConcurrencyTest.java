@@ -0,0 +1,153 @@
+package com.medicine.site.service;
+
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import com.medicine.site.repository.MedicineRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many threads checking out the same medicine at once must never sell more than is in stock,
+ * nor, together with cart reservations, more than there is
+ */
+@SpringBootTest
+class StockDecrementConcurrencyTest {
+    
+    private static final int THREADS = 64;
+    
+    private static final int ATTEMPTS_PER_THREAD = 50;
+    
+    private static final int INITIAL_STOCK = 1_000;
+    
+    @Autowired
+    private MedicineService medicineService;
+    
+    @Autowired
+    private MedicineRepository medicineRepository;
+    
+    @Autowired
+    private StockReservationService stockReservationService;
+    
+    @Test
+    void concurrentDecrementsNeverOversell() throws Exception {
+        Long medicineId = createMedicine("Stress Test Tablet", INITIAL_STOCK).getId();
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    if (medicineService.reduceStockQuantity(medicineId, 1)) {
+                        sold.incrementAndGet();
+                    } else {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        
+        long started = System.nanoTime();
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        long elapsedNanos = System.nanoTime() - started;
+        executor.shutdown();
+        
+        int attempts = THREADS * ATTEMPTS_PER_THREAD;
+        System.out.printf("Stock decrement: %d threads, %d attempts, %d sold, %d rejected in %d ms (%.0f ops/s)%n",
+                THREADS, attempts, sold.get(), rejected.get(), elapsedNanos / 1_000_000,
+                attempts / (elapsedNanos / 1_000_000_000.0));
+        
+        assertEquals(INITIAL_STOCK, sold.get());
+        assertEquals(attempts - INITIAL_STOCK, rejected.get());
+        assertEquals(0, medicineRepository.findById(medicineId).orElseThrow().getStockQuantity());
+        assertEquals(0, stockReservationService.getAvailable(medicineId));
+    }
+    
+    @Test
+    void salesAndCartReservationsTogetherNeverOversell() throws Exception {
+        Long medicineId = createMedicine("Contested Tablet", INITIAL_STOCK).getId();
+        AtomicInteger taken = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            boolean sells = t % 2 == 0;
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    if (sells ? medicineService.reduceStockQuantity(medicineId, 1)
+                            : stockReservationService.tryReserve(medicineId, 1)) {
+                        taken.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+        stockReservationService.flush();
+        
+        assertEquals(INITIAL_STOCK, taken.get());
+        assertEquals(0, stockReservationService.getAvailable(medicineId));
+        assertEquals(0, medicineRepository.findById(medicineId).orElseThrow().getStockQuantity());
+    }
+    
+    @Test
+    void decrementFailsWithoutChangingStockWhenTooLittleIsLeft() {
+        Long medicineId = createMedicine("Low Stock Syrup", 3).getId();
+        
+        assertFalse(medicineService.reduceStockQuantity(medicineId, 4));
+        assertTrue(medicineService.reduceStockQuantity(medicineId, 3));
+        assertEquals(0, medicineRepository.findById(medicineId).orElseThrow().getStockQuantity());
+        assertEquals(0, stockReservationService.getAvailable(medicineId));
+    }
+    
+    @Test
+    void staleEditIsRejectedAfterStockChange() {
+        Medicine stale = createMedicine("Versioned Capsule", 10);
+        
+        assertTrue(medicineService.reduceStockQuantity(stale.getId(), 2));
+        stale.setPrice(Money.of("9.99"));
+        
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> medicineService.updateMedicine(stale));
+        assertEquals(8, medicineRepository.findById(stale.getId()).orElseThrow().getStockQuantity());
+        assertEquals(8, stockReservationService.getAvailable(stale.getId()));
+    }
+    
+    private Medicine createMedicine(String name, int stock) {
+        Medicine medicine = new Medicine();
+        medicine.setName(name);
+        medicine.setGenericName(name);
+        medicine.setManufacturer("Test Pharma");
+        medicine.setCategory("Test");
+        medicine.setPrice(Money.of("5.00"));
+        medicine.setStockQuantity(stock);
+        return medicineService.saveMedicine(medicine);
+    }
+}
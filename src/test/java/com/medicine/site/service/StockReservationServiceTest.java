@@ -0,0 +1,260 @@
+package com.medicine.site.service;
+
+import com.medicine.site.dto.MedicineSuggestionDto;
+import com.medicine.site.entity.Cart;
+import com.medicine.site.entity.Medicine;
+import com.medicine.site.entity.Money;
+import com.medicine.site.repository.CartRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reservation counters must never grant more than the stock, must write their net changes
+ * behind to the database, and must be rebuilt from the carts after a crash. The benchmark
+ * compares reserving in memory with the per-request conditional UPDATE on the same hot medicine,
+ * and the load test shows how plain and sharded (hot) counters scale with threads on one medicine.
+ */
+@SpringBootTest
+class StockReservationServiceTest {
+    
+    private static final int THREADS = 32;
+    
+    private static final int ATTEMPTS_PER_THREAD = 200;
+    
+    @Autowired
+    private StockReservationService stockReservationService;
+    
+    @Autowired
+    private MedicineService medicineService;
+    
+    @Autowired
+    private CartRepository cartRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private MedicineSuggestionIndex suggestionIndex;
+    
+    @Test
+    void reservationsNeverExceedStockAndAreWrittenBehind() throws Exception {
+        int stock = THREADS * ATTEMPTS_PER_THREAD / 2;
+        Long medicineId = createMedicine("Reserved Tablet", stock).getId();
+        
+        int granted = hammer(id -> stockReservationService.tryReserve(medicineId, 1));
+        assertEquals(stock, granted);
+        assertEquals(0, stockReservationService.getAvailable(medicineId));
+        
+        stockReservationService.release(medicineId, 10);
+        stockReservationService.flush();
+        assertEquals(10, stockQuantity(medicineId));
+        assertEquals(stock - 10, reservedQuantity(medicineId));
+    }
+    
+    @Test
+    void hotItemReservationsNeverExceedStockAndAreFoldedBack() throws Exception {
+        int stock = THREADS * ATTEMPTS_PER_THREAD / 2;
+        Long medicineId = createMedicine("Flash Sale Tablet", stock).getId();
+        stockReservationService.markHot(medicineId);
+        
+        int granted = hammer(id -> stockReservationService.tryReserve(medicineId, 1));
+        assertEquals(stock, granted);
+        assertEquals(0, stockReservationService.getAvailable(medicineId));
+        
+        stockReservationService.release(medicineId, 10);
+        stockReservationService.flush();
+        assertEquals(10, stockQuantity(medicineId));
+        assertEquals(stock - 10, reservedQuantity(medicineId));
+        
+        // An admin stock change is spread over the shards, with unflushed reservations still applied
+        assertTrue(stockReservationService.tryReserve(medicineId, 4));
+        medicineService.updateStockQuantity(medicineId, 100);
+        assertEquals(96, stockReservationService.getAvailable(medicineId));
+        assertTrue(stockReservationService.tryReserve(medicineId, 96));
+        assertFalse(stockReservationService.tryReserve(medicineId, 1));
+    }
+    
+    @Test
+    void flushNeitherFailsNorIsUndoneByAnEditLoadedBeforeIt() {
+        Medicine edited = createMedicine("Edited During Flush", 10);
+        assertTrue(stockReservationService.tryReserve(edited.getId(), 3));
+        stockReservationService.flush();
+        
+        edited.setPrice(Money.of("6.00"));
+        medicineService.updateMedicine(edited);
+        
+        assertEquals(7, stockQuantity(edited.getId()));
+        assertEquals(3, reservedQuantity(edited.getId()));
+        assertEquals(7, stockReservationService.getAvailable(edited.getId()));
+    }
+    
+    @Test
+    void stockRefreshesRacingWithReservationsAndFlushesNeverOversell() throws Exception {
+        int stock = THREADS * ATTEMPTS_PER_THREAD / 2;
+        Long medicineId = createMedicine("Refreshed Tablet", stock).getId();
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService refresher = Executors.newSingleThreadExecutor();
+        Future<?> refreshes = refresher.submit(() -> {
+            while (!done.get()) {
+                stockReservationService.flush();
+                stockReservationService.onStockChanged(medicineId);
+            }
+        });
+        
+        int granted = hammer(id -> stockReservationService.tryReserve(medicineId, 1));
+        done.set(true);
+        refreshes.get();
+        refresher.shutdown();
+        
+        assertEquals(stock, granted);
+        stockReservationService.flush();
+        assertEquals(0, stockQuantity(medicineId));
+        assertEquals(stock, reservedQuantity(medicineId));
+    }
+    
+    @Test
+    void flushedStockReachesTheIndexes() {
+        Long medicineId = createMedicine("Zyxflush Tablet", 5).getId();
+        assertTrue(stockReservationService.tryReserve(medicineId, 5));
+        stockReservationService.flush();
+        
+        MedicineSuggestionDto suggestion = suggestionIndex.suggest("Zyxflush", 1).get(0);
+        assertEquals(medicineId, suggestion.getId());
+        assertEquals(0, suggestion.getStockQuantity());
+    }
+    
+    @Test
+    void reconcileRestoresReservationsLostBeforeAFlush() {
+        Medicine medicine = createMedicine("Crash Test Syrup", 10);
+        Medicine oversold = createMedicine("Oversold Crash Syrup", 2);
+        // Committed cart lines whose reservations never reached the database
+        cartRepository.save(new Cart(999L, medicine, 4));
+        cartRepository.save(new Cart(999L, oversold, 5));
+        
+        stockReservationService.reconcile();
+        
+        assertEquals(6, stockQuantity(medicine.getId()));
+        assertEquals(4, reservedQuantity(medicine.getId()));
+        assertEquals(6, stockReservationService.getAvailable(medicine.getId()));
+        assertEquals(0, stockQuantity(oversold.getId()));
+        assertEquals(5, reservedQuantity(oversold.getId()));
+    }
+    
+    @Test
+    void benchmarkInMemoryReservationAgainstDatabaseDecrement() throws Exception {
+        int stock = THREADS * ATTEMPTS_PER_THREAD;
+        Long reservedId = createMedicine("Benchmark Reserved", stock).getId();
+        Long decrementedId = createMedicine("Benchmark Decremented", stock).getId();
+        
+        long started = System.nanoTime();
+        hammer(id -> stockReservationService.tryReserve(reservedId, 1));
+        long inMemoryNanos = System.nanoTime() - started;
+        stockReservationService.flush();
+        
+        started = System.nanoTime();
+        hammer(id -> medicineService.reduceStockQuantity(decrementedId, 1));
+        long databaseNanos = System.nanoTime() - started;
+        
+        int operations = THREADS * ATTEMPTS_PER_THREAD;
+        System.out.printf("Reservations, %d threads x %d on one medicine: in-memory %.0f ops/s, database %.0f ops/s%n",
+                THREADS, ATTEMPTS_PER_THREAD,
+                operations / (inMemoryNanos / 1_000_000_000.0), operations / (databaseNanos / 1_000_000_000.0));
+        
+        assertEquals(0, stockQuantity(reservedId));
+        assertEquals(0, stockQuantity(decrementedId));
+    }
+    
+    @Test
+    void loadTestSingleMedicineScalingPlainAgainstHot() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int attempts = 20_000;
+        System.out.printf("Single-medicine reservations, %d cores available%n", cores);
+        for (int threads = 1; threads <= Math.max(8, cores * 2); threads *= 2) {
+            Long plainId = createMedicine("Load Plain " + threads, threads * attempts).getId();
+            Long hotId = createMedicine("Load Hot " + threads, threads * attempts).getId();
+            stockReservationService.markHot(hotId);
+            
+            long started = System.nanoTime();
+            int plainGranted = hammer(threads, attempts, id -> stockReservationService.tryReserve(plainId, 1));
+            long plainNanos = System.nanoTime() - started;
+            
+            started = System.nanoTime();
+            int hotGranted = hammer(threads, attempts, id -> stockReservationService.tryReserve(hotId, 1));
+            long hotNanos = System.nanoTime() - started;
+            
+            int operations = threads * attempts;
+            System.out.printf("  %2d threads: plain %,.0f ops/s, hot %,.0f ops/s%n", threads,
+                    operations / (plainNanos / 1_000_000_000.0), operations / (hotNanos / 1_000_000_000.0));
+            assertEquals(operations, plainGranted);
+            assertEquals(operations, hotGranted);
+            assertEquals(0, stockReservationService.getAvailable(hotId));
+        }
+        stockReservationService.flush();
+    }
+    
+    /**
+     * Run the operation from all threads at once; returns how many calls succeeded
+     */
+    private int hammer(LongPredicate operation) throws Exception {
+        return hammer(THREADS, ATTEMPTS_PER_THREAD, operation);
+    }
+    
+    private int hammer(int threads, int attempts, LongPredicate operation) throws Exception {
+        AtomicInteger succeeded = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < attempts; i++) {
+                    if (operation.test(i)) {
+                        succeeded.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+        return succeeded.get();
+    }
+    
+    private int stockQuantity(Long medicineId) {
+        return jdbcTemplate.queryForObject("SELECT stock_quantity FROM medicines WHERE id = ?", Integer.class, medicineId);
+    }
+    
+    private int reservedQuantity(Long medicineId) {
+        return jdbcTemplate.queryForObject("SELECT reserved_quantity FROM medicines WHERE id = ?", Integer.class, medicineId);
+    }
+    
+    private Medicine createMedicine(String name, int stock) {
+        Medicine medicine = new Medicine();
+        medicine.setName(name);
+        medicine.setGenericName(name);
+        medicine.setManufacturer("Test Pharma");
+        medicine.setCategory("Test");
+        medicine.setPrice(Money.of("5.00"));
+        medicine.setStockQuantity(stock);
+        return medicineService.saveMedicine(medicine);
+    }
+}
@@ -0,0 +1,111 @@
+package com.medicine.site.service;
+
+import com.medicine.site.config.RequestQueryCounter;
+import com.medicine.site.entity.User;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class UserServiceTest {
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private UserUniquenessFilter uniquenessFilter;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Test
+    void loginLooksUpUsernameOrEmailInOneQuery() {
+        userService.registerUser(newUser("lookupuser", "lookup@example.com"));
+        
+        RequestQueryCounter.begin(0);
+        assertEquals("lookupuser", userService.findByUsernameOrEmail("lookupuser").orElseThrow().getUsername());
+        assertEquals(1, RequestQueryCounter.end().getStatements());
+        
+        RequestQueryCounter.begin(0);
+        assertEquals("lookupuser", userService.findByUsernameOrEmail("lookup@example.com").orElseThrow().getUsername());
+        assertEquals(1, RequestQueryCounter.end().getStatements());
+        
+        assertTrue(userService.findByUsernameOrEmail("nobody").isEmpty());
+    }
+    
+    @Test
+    void registeringANewUserSkipsTheUniquenessQueries() {
+        RequestQueryCounter.begin(0);
+        userService.registerUser(newUser("freshuser", "fresh@example.com"));
+        
+        // Only the insert: neither the username nor the email can be taken
+        assertEquals(1, RequestQueryCounter.end().getStatements());
+        assertTrue(uniquenessFilter.mightContainUsername("FreshUser"));
+        assertTrue(userService.usernameExists("freshuser"));
+        assertFalse(uniquenessFilter.mightContainEmail("never-registered@example.com"));
+    }
+    
+    @Test
+    void duplicatesAreRejectedEvenWhenTheFilterMissedThem() {
+        userService.registerUser(newUser("takenuser", "taken@example.com"));
+        assertThrows(RuntimeException.class, () -> userService.registerUser(newUser("takenuser", "other@example.com")));
+        assertThrows(RuntimeException.class, () -> userService.registerUser(newUser("otheruser", "taken@example.com")));
+        
+        // A row the filter never saw (e.g. a concurrent registration): the unique constraint catches it
+        jdbcTemplate.update("INSERT INTO users (username, email, password, full_name, is_active, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)", "raceduser", "raced@example.com", "x", "Raced User", true,
+                LocalDateTime.now(), LocalDateTime.now());
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> userService.registerUser(newUser("raceduser", "raced2@example.com")));
+        assertEquals("Username already exists: raceduser", e.getMessage());
+    }
+    
+    @Test
+    void noConnectionIsHeldWhileThePasswordIsChecked() throws Exception {
+        userService.registerUser(newUser("hashinguser", "hashing@example.com"));
+        HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        
+        Future<User> login = executor.submit(() -> userService.authenticateUser("hashinguser", "secret-password"));
+        // The fewest seen: background jobs (e.g. the reservation flush) may briefly take a connection too
+        int fewestActive = Integer.MAX_VALUE;
+        while (!login.isDone()) {
+            if (passwordHashingService.getStats().getActiveThreads() > 0) {
+                fewestActive = Math.min(fewestActive, pool.getActiveConnections());
+            }
+        }
+        executor.shutdown();
+        
+        assertEquals("hashinguser", login.get().getUsername());
+        assertEquals(0, fewestActive);
+    }
+    
+    private static User newUser(String username, String email) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setPassword("secret-password");
+        user.setFullName("Test User");
+        return user;
+    }
+}
@@ -0,0 +1,183 @@
+package com.medicine.site.support;
+
+import com.medicine.site.CompleteMedSiteApplication;
+import com.medicine.site.service.MedicineService;
+import com.medicine.site.service.StockReservationService;
+import com.medicine.site.service.UserUniquenessFilter;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The application on an embedded H2 database filled with generated medicines and users,
+ * for the benchmarks and the load test. Medicine names are built from {@link #NAMES}, so
+ * searching for one of them matches about 1/20 of the catalog.
+ */
+public final class EmbeddedShop implements AutoCloseable {
+    
+    public static final String[] NAMES = {
+            "Paracetamol", "Ibuprofen", "Amoxicillin", "Cetirizine", "Omeprazole", "Metformin", "Atorvastatin",
+            "Losartan", "Salbutamol", "Loratadine", "Azithromycin", "Ciprofloxacin", "Diclofenac", "Naproxen",
+            "Ranitidine", "Simvastatin", "Amlodipine", "Levothyroxine", "Prednisolone", "Fluconazole"};
+    
+    public static final String[] CATEGORIES = {
+            "Pain Relief", "Antibiotics", "Allergy", "Digestive Health", "Diabetes", "Heart Health",
+            "Respiratory", "Vitamins", "Skin Care", "Hormones"};
+    
+    public static final int MANUFACTURERS = 50;
+    
+    private static final String[] FORMS = {"Tablet", "Capsule", "Syrup", "Cream", "Inhaler"};
+    
+    private static final int SEED_BATCH = 5_000;
+    
+    private static final String MEDICINE_SQL =
+            "INSERT INTO medicines (name, generic_name, manufacturer, category, description, price, stock_quantity, " +
+            "reserved_quantity, dosage_form, strength, requires_prescription, is_active, created_at, updated_at, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?, ?, ?, 1, ?, ?, 0)";
+    
+    private static final String USER_SQL =
+            "INSERT INTO users (username, email, password, full_name, is_active, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, 1, ?, ?)";
+    
+    private final ConfigurableApplicationContext context;
+    
+    private long firstMedicineId;
+    
+    private long lastMedicineId;
+    
+    private EmbeddedShop(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+    
+    /**
+     * Start the application on a fresh in-memory database; extra properties override the defaults
+     */
+    public static EmbeddedShop start(WebApplicationType webApplicationType, String... properties) {
+        List<String> all = new ArrayList<>(List.of(
+                "spring.main.banner-mode=off",
+                "logging.level.root=WARN",
+                "spring.datasource.url=jdbc:h2:mem:shop;MODE=MSSQLServer;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                "spring.datasource.driver-class-name=org.h2.Driver",
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "spring.jpa.show-sql=false",
+                "spring.jpa.properties.hibernate.generate_statistics=false",
+                // The tests' fail mode would turn a cold-cache request under load into an error
+                "query-budget.mode=log"));
+        all.addAll(Arrays.asList(properties));
+        // As command-line arguments, which outrank application.properties (builder properties are only defaults)
+        return new EmbeddedShop(new SpringApplicationBuilder(CompleteMedSiteApplication.class)
+                .web(webApplicationType)
+                .run(all.stream().map(property -> "--" + property).toArray(String[]::new)));
+    }
+    
+    /**
+     * Bulk-insert generated medicines, each with plenty of stock, and bring the in-memory
+     * indexes and stock counters up to date with them
+     */
+    public EmbeddedShop seedMedicines(int count) {
+        JdbcTemplate jdbcTemplate = bean(JdbcTemplate.class);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (int start = 0; start < count; start += SEED_BATCH) {
+            int from = start;
+            int size = Math.min(SEED_BATCH, count - start);
+            jdbcTemplate.batchUpdate(MEDICINE_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    int n = from + i;
+                    String name = NAMES[n % NAMES.length];
+                    ps.setString(1, name + " " + (100 + n % 900) + "mg #" + n);
+                    ps.setString(2, name);
+                    ps.setString(3, "Manufacturer " + (n % MANUFACTURERS));
+                    ps.setString(4, CATEGORIES[n % CATEGORIES.length]);
+                    ps.setString(5, name + " generated for load, batch " + (n / SEED_BATCH));
+                    ps.setBigDecimal(6, BigDecimal.valueOf(100 + n % 10_000, 2));
+                    ps.setInt(7, 1_000_000);
+                    ps.setString(8, FORMS[n % FORMS.length]);
+                    ps.setString(9, (100 + n % 900) + "mg");
+                    ps.setBoolean(10, n % 7 == 0);
+                    ps.setTimestamp(11, now);
+                    ps.setTimestamp(12, now);
+                }
+                
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+        firstMedicineId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM medicines WHERE name LIKE '%#%'", Long.class);
+        lastMedicineId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM medicines", Long.class);
+        
+        bean(MedicineService.class).buildSearchIndex();
+        bean(StockReservationService.class).reconcile();
+        return this;
+    }
+    
+    /**
+     * Insert users prefix0..prefix(count-1) sharing one password, hashed once
+     */
+    public EmbeddedShop seedUsers(String prefix, int count, String password) {
+        String hash = bean(BCryptPasswordEncoder.class).encode(password);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        bean(JdbcTemplate.class).batchUpdate(USER_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, prefix + i);
+                ps.setString(2, prefix + i + "@example.com");
+                ps.setString(3, hash);
+                ps.setString(4, "Generated User " + i);
+                ps.setTimestamp(5, now);
+                ps.setTimestamp(6, now);
+            }
+            
+            @Override
+            public int getBatchSize() {
+                return count;
+            }
+        });
+        bean(UserUniquenessFilter.class).build();
+        return this;
+    }
+    
+    public ConfigurableApplicationContext context() {
+        return context;
+    }
+    
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+    
+    /**
+     * HTTP port of a started web application
+     */
+    public int port() {
+        return context.getEnvironment().getProperty("local.server.port", Integer.class, -1);
+    }
+    
+    public long firstMedicineId() {
+        return firstMedicineId;
+    }
+    
+    public long lastMedicineId() {
+        return lastMedicineId;
+    }
+    
+    @Override
+    public void close() {
+        context.close();
+    }
+}